@@ -43,6 +43,7 @@ dependencies {
 
     implementation("org.slf4j:slf4j-api:2.0.7")
     implementation("commons-io:commons-io:2.7")
+    implementation("org.brotli:dec:0.1.2")
     implementation(group = "org.jsoup", name = "jsoup", version = "1.15.3")
     implementation(group = "com.google.code.findbugs", name = "jsr305", version = "3.0.2")
 
@@ -54,6 +55,31 @@ configure<JavaPluginExtension> {
     targetCompatibility = JavaVersion.VERSION_11
 }
 
+// Classes that replace their Java 11 version on Java 21+, they end up in META-INF/versions/21 of the jar.
+// They need a JDK 21 toolchain, so they are only built when Gradle runs on Java 21+ or with -Pjava21=true,
+// without them the jar still works everywhere and simply uses the Java 11 classes.
+val buildJava21 = findProperty("java21")?.toString()?.toBoolean()
+    ?: (JavaVersion.current().majorVersion.toInt() >= 21)
+
+if (buildJava21) {
+    val java21: SourceSet by sourceSets.creating {
+        java.srcDir("src/main/java21")
+    }
+
+    tasks.named<JavaCompile>(java21.compileJavaTaskName) {
+        javaCompiler.set(javaToolchains.compilerFor {
+            languageVersion.set(JavaLanguageVersion.of(21))
+        })
+        options.release.set(21)
+    }
+
+    tasks.named<Jar>("jar") {
+        into("META-INF/versions/21") {
+            from(java21.output)
+        }
+    }
+}
+
 tasks.withType<Wrapper> {
     distributionType = DistributionType.ALL
     gradleVersion = "7.3.3"
@@ -64,6 +90,12 @@ val build: Task by tasks
 val clean: Task by tasks
 val publish: Task by tasks
 
+jar.apply {
+    manifest {
+        attributes("Multi-Release" to "true")
+    }
+}
+
 val sourcesJar = task<Jar>("sourcesJar") {
     archiveClassifier.set("sources")
     from(sourceSets["main"].allJava)
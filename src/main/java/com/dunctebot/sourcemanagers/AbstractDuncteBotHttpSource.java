@@ -16,13 +16,29 @@
 
 package com.dunctebot.sourcemanagers;
 
+import com.dunctebot.sourcemanagers.cache.MetadataCache;
+import com.dunctebot.sourcemanagers.cache.NegativeCache;
+import com.dunctebot.sourcemanagers.cache.PlaybackUrlCache;
+import com.dunctebot.sourcemanagers.cache.SingleFlight;
+import com.dunctebot.sourcemanagers.io.ContentDecoders;
+import com.dunctebot.sourcemanagers.io.FixtureHttpInterfaceManager;
+import com.dunctebot.sourcemanagers.io.HttpClientPools;
+import com.dunctebot.sourcemanagers.io.ShortLinkResolver;
+import com.dunctebot.sourcemanagers.metrics.SourceMetrics;
+import com.dunctebot.sourcemanagers.metrics.SourceMetricsRegistry;
+import com.sedmelluq.discord.lavaplayer.player.AudioPlayerManager;
 import com.sedmelluq.discord.lavaplayer.source.AudioSourceManager;
 import com.sedmelluq.discord.lavaplayer.tools.ExceptionTools;
+import com.sedmelluq.discord.lavaplayer.tools.FriendlyException;
 import com.sedmelluq.discord.lavaplayer.tools.http.HttpContextFilter;
-import com.sedmelluq.discord.lavaplayer.tools.io.HttpClientTools;
 import com.sedmelluq.discord.lavaplayer.tools.io.HttpConfigurable;
 import com.sedmelluq.discord.lavaplayer.tools.io.HttpInterface;
 import com.sedmelluq.discord.lavaplayer.tools.io.HttpInterfaceManager;
+import com.sedmelluq.discord.lavaplayer.track.AudioItem;
+import com.sedmelluq.discord.lavaplayer.track.AudioPlaylist;
+import com.sedmelluq.discord.lavaplayer.track.AudioReference;
+import com.sedmelluq.discord.lavaplayer.track.AudioTrack;
+import com.sedmelluq.discord.lavaplayer.track.BasicAudioPlaylist;
 import org.apache.http.HttpResponse;
 import org.apache.http.client.CookieStore;
 import org.apache.http.client.config.RequestConfig;
@@ -30,31 +46,345 @@ import org.apache.http.client.methods.HttpUriRequest;
 import org.apache.http.client.protocol.HttpClientContext;
 import org.apache.http.impl.client.BasicCookieStore;
 import org.apache.http.impl.client.HttpClientBuilder;
+
+import javax.annotation.Nullable;
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
 import java.util.function.Consumer;
 import java.util.function.Function;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
 
 public abstract class AbstractDuncteBotHttpSource implements AudioSourceManager, HttpConfigurable {
 
     protected final HttpInterfaceManager httpInterfaceManager;
+    private final SingleFlight<String, AudioItem> inFlightLoads = new SingleFlight<>(AbstractDuncteBotHttpSource::copyItem);
+    private PlaybackUrlCache playbackUrlCache = PlaybackUrlCache.getDefault();
+    private MetadataCache metadataCache = null;
+    private NegativeCache negativeCache = null;
+    private SourceMetricsRegistry metricsRegistry = SourceMetricsRegistry.getDefault();
+    private volatile SourceMetrics metrics = null;
+    private Executor resolveExecutor = ResolveThreads.getDefault();
+    private ShortLinkResolver shortLinkResolver = ShortLinkResolver.getDefault();
 
     public AbstractDuncteBotHttpSource() {
         this(true);
     }
 
     public AbstractDuncteBotHttpSource(boolean withoutCookies) {
-        this(HttpClientTools.createDefaultThreadLocalManager(), withoutCookies);
+        this(null, withoutCookies);
     }
 
-    public AbstractDuncteBotHttpSource(HttpInterfaceManager httpInterfaceManager, boolean withoutCookies) {
-        this.httpInterfaceManager = httpInterfaceManager;
+    /**
+     * @param httpInterfaceManager The manager to use, or null to use the shared pools of {@link HttpClientPools#getDefault()}
+     * @param withoutCookies true to clear the cookies before every sequence of requests
+     */
+    public AbstractDuncteBotHttpSource(@Nullable HttpInterfaceManager httpInterfaceManager, boolean withoutCookies) {
+        // the source name is a constant for all of our sources, so it is safe to use here
+        this.httpInterfaceManager = httpInterfaceManager == null
+            ? FixtureHttpInterfaceManager.wrapFromSystemProperties(HttpClientPools.getDefault().createManager(this.getSourceName()))
+            : httpInterfaceManager;
 
         if (withoutCookies) {
             this.httpInterfaceManager.setHttpContextFilter(new FuckCookies());
         }
+
+        this.registerShortLinks(this.shortLinkResolver);
     }
 
     public HttpInterface getHttpInterface() {
-        return httpInterfaceManager.getInterface();
+        return this.bindMetrics(httpInterfaceManager.getInterface());
+    }
+
+    /**
+     * Makes the pooled clients record the compression of the responses in the metrics of this source
+     *
+     * @param httpInterface An interface that makes requests for this source
+     *
+     * @return The same interface
+     */
+    protected HttpInterface bindMetrics(HttpInterface httpInterface) {
+        httpInterface.getContext().setAttribute(ContentDecoders.METRICS, this.getMetrics());
+
+        return httpInterface;
+    }
+
+    /**
+     * Loads an item without blocking the calling thread. On Java 21 and newer every load runs on its own virtual
+     * thread by default, on older versions they share a pool of platform threads.
+     *
+     * @param manager The player manager that the item is loaded for
+     * @param reference The reference to load
+     *
+     * @return A future that completes with the loaded item, or null when this source can't load the reference
+     */
+    public CompletableFuture<AudioItem> loadItemAsync(AudioPlayerManager manager, AudioReference reference) {
+        return CompletableFuture.supplyAsync(() -> this.loadItem(manager, reference), this.resolveExecutor);
+    }
+
+    /**
+     * Fetches an item from the upstream, concurrent fetches for the same key are collapsed into a single fetch.
+     * Tracks are served from the {@link MetadataCache} when one is set and recent failures are replayed from the
+     * {@link NegativeCache}. The time it took and the outcome are recorded in the {@link SourceMetrics} of this source.
+     *
+     * @param key A normalized identifier for the item, eg the video id
+     * @param fetcher Does the actual fetching, this should only throw {@link FriendlyException}s
+     *
+     * @return The fetched item
+     */
+    protected AudioItem fetchItem(String key, Supplier<AudioItem> fetcher) {
+        final SourceMetrics metrics = this.getMetrics();
+        final long start = System.nanoTime();
+
+        try {
+            final AudioItem item = this.fetchItemCached(key, fetcher);
+
+            metrics.recordOutcome(item);
+
+            return item;
+        } catch (FriendlyException e) {
+            metrics.recordOutcome(e);
+            throw e;
+        } finally {
+            metrics.getLoadLatency().recordSince(start);
+        }
+    }
+
+    private AudioItem fetchItemCached(String key, Supplier<AudioItem> fetcher) {
+        final NegativeCache negativeCache = this.negativeCache;
+
+        if (negativeCache != null) {
+            final NegativeCache.Failure failure = negativeCache.get(this.getSourceName(), key);
+
+            if (failure != null) {
+                return failure.replay();
+            }
+        }
+
+        final MetadataCache metadataCache = this.metadataCache;
+
+        if (metadataCache != null) {
+            final AudioTrack cached = metadataCache.get(this.getSourceName(), key);
+
+            if (cached != null) {
+                return cached;
+            }
+        }
+
+        if (negativeCache == null && metadataCache == null) {
+            return this.inFlightLoads.load(key, fetcher);
+        }
+
+        return this.inFlightLoads.load(key, () -> {
+            final AudioItem item;
+
+            try {
+                item = fetcher.get();
+            } catch (FriendlyException e) {
+                if (negativeCache != null && NegativeCache.Failure.isPermanent(e)) {
+                    negativeCache.put(this.getSourceName(), key, NegativeCache.Failure.of(e));
+                }
+
+                throw e;
+            }
+
+            if (item == AudioReference.NO_TRACK) {
+                if (negativeCache != null) {
+                    negativeCache.put(this.getSourceName(), key, NegativeCache.Failure.noTrack());
+                }
+            } else if (item instanceof AudioTrack && metadataCache != null) {
+                metadataCache.put(this.getSourceName(), key, (AudioTrack) item);
+            }
+
+            return item;
+        });
+    }
+
+    /**
+     * Removes an item from the metadata cache, if there is one
+     *
+     * @param key The normalized identifier of the item
+     */
+    public void invalidateItem(String key) {
+        final MetadataCache cache = this.metadataCache;
+
+        if (cache != null) {
+            cache.invalidate(this.getSourceName(), key);
+        }
+    }
+
+    /**
+     * @return The fetches that are currently running and how many callers shared a fetch
+     */
+    public SingleFlight<String, AudioItem> getInFlightLoads() {
+        return inFlightLoads;
+    }
+
+    /**
+     * @return The cache that tracks of this source use for their resolved playback urls
+     */
+    public PlaybackUrlCache getPlaybackUrlCache() {
+        return playbackUrlCache;
+    }
+
+    /**
+     * Replaces the playback url cache, by default all sources share {@link PlaybackUrlCache#getDefault()}
+     *
+     * @param playbackUrlCache The cache to use for this source
+     */
+    public void setPlaybackUrlCache(PlaybackUrlCache playbackUrlCache) {
+        this.playbackUrlCache = playbackUrlCache;
+    }
+
+    @Nullable
+    public MetadataCache getMetadataCache() {
+        return metadataCache;
+    }
+
+    /**
+     * Enables caching of loaded tracks, sources can share the same cache.
+     *
+     * @param metadataCache The cache to use, or null to disable caching
+     */
+    public void setMetadataCache(@Nullable MetadataCache metadataCache) {
+        this.metadataCache = metadataCache;
+    }
+
+    @Nullable
+    public NegativeCache getNegativeCache() {
+        return negativeCache;
+    }
+
+    /**
+     * Enables remembering dead identifiers, disabled by default. Sources can share the same cache, eg
+     * {@link NegativeCache#getDefault()}. Only failures that won't change on a retry are remembered,
+     * see {@link NegativeCache.Failure#isPermanent(FriendlyException)}.
+     *
+     * @param negativeCache The cache to use, or null to always retry dead identifiers
+     */
+    public void setNegativeCache(@Nullable NegativeCache negativeCache) {
+        this.negativeCache = negativeCache;
+    }
+
+    /**
+     * @return The metrics of this source
+     */
+    public SourceMetrics getMetrics() {
+        SourceMetrics metrics = this.metrics;
+
+        if (metrics == null) {
+            // the source name is not known yet in the constructor of this class
+            metrics = this.metricsRegistry.forSource(this.getSourceName());
+            this.metrics = metrics;
+        }
+
+        return metrics;
+    }
+
+    public SourceMetricsRegistry getMetricsRegistry() {
+        return metricsRegistry;
+    }
+
+    /**
+     * Replaces the registry that the metrics of this source are recorded in, by default all sources share
+     * {@link SourceMetricsRegistry#getDefault()}
+     *
+     * @param metricsRegistry The registry to use for this source
+     */
+    public void setMetricsRegistry(SourceMetricsRegistry metricsRegistry) {
+        this.metricsRegistry = metricsRegistry;
+        this.metrics = null;
+    }
+
+    public Executor getResolveExecutor() {
+        return resolveExecutor;
+    }
+
+    /**
+     * Replaces the executor that {@link #loadItemAsync(AudioPlayerManager, AudioReference)} runs on
+     *
+     * @param resolveExecutor The executor to use for this source
+     */
+    public void setResolveExecutor(Executor resolveExecutor) {
+        this.resolveExecutor = resolveExecutor;
+    }
+
+    public ShortLinkResolver getShortLinkResolver() {
+        return shortLinkResolver;
+    }
+
+    /**
+     * Replaces the short link resolver, by default all sources share {@link ShortLinkResolver#getDefault()}
+     *
+     * @param shortLinkResolver The resolver to use for this source, the short links of this source are registered on it
+     */
+    public void setShortLinkResolver(ShortLinkResolver shortLinkResolver) {
+        this.registerShortLinks(shortLinkResolver);
+        this.shortLinkResolver = shortLinkResolver;
+    }
+
+    /**
+     * Registers the short link hosts of this source, this is called from the constructor so only use static state here
+     *
+     * @param resolver The resolver that this source uses
+     */
+    protected void registerShortLinks(ShortLinkResolver resolver) {
+        // No short links by default
+    }
+
+    /**
+     * Follows a short link to the url that this source can load, the result is cached by the {@link ShortLinkResolver}
+     *
+     * @param url The short link
+     *
+     * @return The url that the short link points to
+     */
+    protected String resolveShortLink(String url) {
+        try (final HttpInterface httpInterface = this.getHttpInterface()) {
+            return this.shortLinkResolver.resolve(httpInterface, url);
+        } catch (IOException e) {
+            throw ExceptionTools.wrapUnfriendlyExceptions(
+                "Could not follow the short link", FriendlyException.Severity.COMMON, e
+            );
+        }
+    }
+
+    /**
+     * Writes the resolved playback url of the track, call this from {@link #encodeTrack(AudioTrack, DataOutput)}
+     *
+     * @param track The track that is being encoded
+     * @param output The output of the encoded track
+     *
+     * @throws IOException When writing fails
+     */
+    protected void encodeResolvedStream(AudioTrack track, DataOutput output) throws IOException {
+        if (track instanceof Mp3Track) {
+            ResolvedStream.write(((Mp3Track) track).getResolvedStream(), output);
+        }
+    }
+
+    /**
+     * Restores the playback url that {@link #encodeResolvedStream(AudioTrack, DataOutput)} wrote, if it is still valid
+     *
+     * @param track The track that was decoded
+     * @param input The input of the encoded track
+     *
+     * @return The track
+     *
+     * @throws IOException When reading fails
+     */
+    protected AudioTrack decodeResolvedStream(Mp3Track track, DataInput input) throws IOException {
+        final ResolvedStream stream = ResolvedStream.read(input);
+
+        if (stream != null) {
+            track.restoreResolvedStream(stream);
+        }
+
+        return track;
     }
 
     @Override
@@ -72,6 +402,31 @@ public abstract class AbstractDuncteBotHttpSource implements AudioSourceManager,
         httpInterfaceManager.configureBuilder(configurator);
     }
 
+    // Tracks hold playback state, every caller needs their own instance
+    private static AudioItem copyItem(AudioItem item) {
+        if (item instanceof AudioTrack) {
+            return ((AudioTrack) item).makeClone();
+        }
+
+        if (item instanceof AudioPlaylist) {
+            final AudioPlaylist playlist = (AudioPlaylist) item;
+            final List<AudioTrack> tracks = playlist.getTracks()
+                .stream()
+                .map(AudioTrack::makeClone)
+                .collect(Collectors.toList());
+            final AudioTrack selected = playlist.getSelectedTrack();
+
+            return new BasicAudioPlaylist(
+                playlist.getName(),
+                tracks,
+                selected == null ? null : tracks.get(playlist.getTracks().indexOf(selected)),
+                playlist.isSearchResult()
+            );
+        }
+
+        return item;
+    }
+
     public static class FuckCookies implements HttpContextFilter {
         @Override
         public void onContextOpen(HttpClientContext context) {
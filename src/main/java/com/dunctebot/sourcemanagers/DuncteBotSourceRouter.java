@@ -0,0 +1,420 @@
+/*
+ * Copyright 2026 Duncan "duncte123" Sterken
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package com.dunctebot.sourcemanagers;
+
+import com.dunctebot.sourcemanagers.cache.MetadataCache;
+import com.dunctebot.sourcemanagers.cache.NegativeCache;
+import com.sedmelluq.discord.lavaplayer.player.AudioPlayerManager;
+import com.sedmelluq.discord.lavaplayer.source.AudioSourceManager;
+import com.sedmelluq.discord.lavaplayer.tools.io.HttpConfigurable;
+import com.sedmelluq.discord.lavaplayer.track.AudioItem;
+import com.sedmelluq.discord.lavaplayer.track.AudioReference;
+import com.sedmelluq.discord.lavaplayer.track.AudioTrack;
+import com.sedmelluq.discord.lavaplayer.track.AudioTrackInfo;
+import org.apache.http.client.config.RequestConfig;
+import org.apache.http.impl.client.HttpClientBuilder;
+
+import javax.annotation.Nullable;
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+/**
+ * A source manager that sits in front of all our other source managers.
+ *
+ * Lavaplayer asks every registered source manager in turn if it can load an identifier, which means that every
+ * identifier runs through all of our regexes before it reaches the source it actually belongs to.
+ * This router parses the identifier once (prefix, scheme and host) and hands it to at most one delegate.
+ *
+ * Only the router is visible to lavaplayer, {@code playerManager.source(TikTokAudioSourceManager.class)} returns null
+ * for our sources. Use {@link #source(AudioPlayerManager, Class)} or {@link #source(Class)} to get them instead.
+ */
+public class DuncteBotSourceRouter implements AudioSourceManager, HttpConfigurable {
+    private final Map<String, AudioSourceManager> hosts = new HashMap<>();
+    private final Map<String, AudioSourceManager> prefixes = new HashMap<>();
+    private final List<AudioSourceManager> delegates = new ArrayList<>();
+
+    /**
+     * Registers a delegate for a set of domains, subdomains of these domains are routed to the same delegate
+     *
+     * @param manager The source manager that handles these domains
+     * @param domains The domains that this source manager can load, eg {@code tiktok.com}
+     *
+     * @return This router, useful for chaining
+     */
+    public DuncteBotSourceRouter register(AudioSourceManager manager, String... domains) {
+        this.addDelegate(manager);
+
+        for (final String domain : domains) {
+            this.hosts.put(domain.toLowerCase(Locale.ROOT), manager);
+        }
+
+        return this;
+    }
+
+    /**
+     * Registers a delegate for identifiers that are not urls, eg {@code speak:} or {@code OCR}
+     *
+     * @param manager The source manager that handles identifiers starting with this prefix
+     * @param prefix The prefix that identifiers for this source manager start with
+     *
+     * @return This router, useful for chaining
+     */
+    public DuncteBotSourceRouter registerPrefix(AudioSourceManager manager, String prefix) {
+        this.addDelegate(manager);
+        this.prefixes.put(prefix, manager);
+
+        return this;
+    }
+
+    private void addDelegate(AudioSourceManager manager) {
+        if (!this.delegates.contains(manager)) {
+            this.delegates.add(manager);
+        }
+    }
+
+    /**
+     * Registers this router onto the player manager.
+     * Every delegate also gets a decode only source manager registered so encoded tracks keep working.
+     *
+     * @param playerManager The player manager to register onto
+     */
+    public void registerOnto(AudioPlayerManager playerManager) {
+        playerManager.registerSourceManager(this);
+
+        for (final AudioSourceManager delegate : this.delegates) {
+            playerManager.registerSourceManager(new DecodingSourceManager(delegate));
+        }
+    }
+
+    /**
+     * @return All the source managers that this router delegates to
+     */
+    public List<AudioSourceManager> getDelegates() {
+        return List.copyOf(this.delegates);
+    }
+
+    /**
+     * @param klass The class of the source manager
+     * @param <T> The type of the source manager
+     *
+     * @return The delegate of the given class, or null if it is not registered on this router
+     */
+    @Nullable
+    public <T extends AudioSourceManager> T source(Class<T> klass) {
+        for (final AudioSourceManager delegate : this.delegates) {
+            if (klass.isAssignableFrom(delegate.getClass())) {
+                return klass.cast(delegate);
+            }
+        }
+
+        return null;
+    }
+
+    /**
+     * Finds one of our source managers on a player manager that a router was registered onto
+     *
+     * @param playerManager The player manager
+     * @param klass The class of the source manager
+     * @param <T> The type of the source manager
+     *
+     * @return The source manager, from the router or registered directly, or null if it is not registered at all
+     */
+    @Nullable
+    public static <T extends AudioSourceManager> T source(AudioPlayerManager playerManager, Class<T> klass) {
+        final T direct = playerManager.source(klass);
+
+        if (direct != null) {
+            return direct;
+        }
+
+        final DuncteBotSourceRouter router = playerManager.source(DuncteBotSourceRouter.class);
+
+        return router == null ? null : router.source(klass);
+    }
+
+    /**
+     * Enables the negative cache on every delegate that supports it
+     *
+     * @param negativeCache The cache to use, or null to always retry dead identifiers
+     */
+    public void setNegativeCache(@Nullable NegativeCache negativeCache) {
+        for (final AudioSourceManager delegate : this.delegates) {
+            if (delegate instanceof AbstractDuncteBotHttpSource) {
+                ((AbstractDuncteBotHttpSource) delegate).setNegativeCache(negativeCache);
+            }
+        }
+    }
+
+    /**
+     * Enables the metadata cache on every delegate that supports it
+     *
+     * @param metadataCache The cache to use, or null to disable caching
+     */
+    public void setMetadataCache(@Nullable MetadataCache metadataCache) {
+        for (final AudioSourceManager delegate : this.delegates) {
+            if (delegate instanceof AbstractDuncteBotHttpSource) {
+                ((AbstractDuncteBotHttpSource) delegate).setMetadataCache(metadataCache);
+            }
+        }
+    }
+
+    /**
+     * Finds the delegate that should load this identifier
+     *
+     * @param identifier The identifier to route
+     *
+     * @return The source manager that should load this identifier, or null if none of the delegates can load it
+     */
+    @Nullable
+    public AudioSourceManager route(String identifier) {
+        final String host = extractHost(identifier);
+
+        if (host == null) {
+            return this.routePrefix(identifier);
+        }
+
+        return this.routeHost(host);
+    }
+
+    @Nullable
+    private AudioSourceManager routePrefix(String identifier) {
+        for (final Map.Entry<String, AudioSourceManager> entry : this.prefixes.entrySet()) {
+            if (identifier.startsWith(entry.getKey())) {
+                return entry.getValue();
+            }
+        }
+
+        return null;
+    }
+
+    @Nullable
+    private AudioSourceManager routeHost(String host) {
+        String current = host;
+
+        // walk up the domain, www.tiktok.com -> tiktok.com -> com
+        while (true) {
+            final AudioSourceManager manager = this.hosts.get(current);
+
+            if (manager != null) {
+                return manager;
+            }
+
+            final int dot = current.indexOf('.');
+
+            if (dot == -1) {
+                return null;
+            }
+
+            current = current.substring(dot + 1);
+        }
+    }
+
+    /**
+     * Extracts the lowercase host from an identifier, urls without a scheme (eg {@code clyp.it/abc}) are supported
+     *
+     * @param identifier The identifier to extract the host from
+     *
+     * @return The host, or null if the identifier is not a url
+     */
+    @Nullable
+    static String extractHost(String identifier) {
+        final int schemeEnd = identifier.indexOf("://");
+        final int hostStart;
+
+        if (schemeEnd == -1) {
+            hostStart = 0;
+        } else {
+            final String scheme = identifier.substring(0, schemeEnd);
+
+            if (!"http".equalsIgnoreCase(scheme) && !"https".equalsIgnoreCase(scheme)) {
+                return null;
+            }
+
+            hostStart = schemeEnd + 3;
+        }
+
+        int hostEnd = identifier.length();
+
+        for (int i = hostStart; i < identifier.length(); i++) {
+            final char c = identifier.charAt(i);
+
+            if (c == '/' || c == '?' || c == '#') {
+                hostEnd = i;
+                break;
+            }
+        }
+
+        String host = identifier.substring(hostStart, hostEnd);
+
+        // Without a scheme a colon means we are looking at something like "speak:hello" or "ytsearch:song"
+        if (schemeEnd == -1 && (host.indexOf(':') != -1 || host.indexOf('@') != -1)) {
+            return null;
+        }
+
+        final int userInfo = host.lastIndexOf('@');
+
+        if (userInfo != -1) {
+            host = host.substring(userInfo + 1);
+        }
+
+        final int port = host.indexOf(':');
+
+        if (port != -1) {
+            host = host.substring(0, port);
+        }
+
+        // "OCR03310" and search queries don't have a dot in them
+        if (host.isEmpty() || host.indexOf('.') == -1 || host.indexOf(' ') != -1) {
+            return null;
+        }
+
+        return host.toLowerCase(Locale.ROOT);
+    }
+
+    @Override
+    public String getSourceName() {
+        return "dunctebot-router";
+    }
+
+    @Override
+    public AudioItem loadItem(AudioPlayerManager manager, AudioReference reference) {
+        final AudioSourceManager delegate = this.route(reference.identifier);
+
+        if (delegate == null) {
+            return null;
+        }
+
+        return delegate.loadItem(manager, reference);
+    }
+
+    /**
+     * Loads an item without blocking the calling thread, see
+     * {@link AbstractDuncteBotHttpSource#loadItemAsync(AudioPlayerManager, AudioReference)}
+     *
+     * @param manager The player manager that the item is loaded for
+     * @param reference The reference to load
+     *
+     * @return A future that completes with the loaded item, or null when none of our sources can load the reference
+     */
+    public CompletableFuture<AudioItem> loadItemAsync(AudioPlayerManager manager, AudioReference reference) {
+        final AudioSourceManager delegate = this.route(reference.identifier);
+
+        if (delegate == null) {
+            return CompletableFuture.completedFuture(null);
+        }
+
+        if (delegate instanceof AbstractDuncteBotHttpSource) {
+            return ((AbstractDuncteBotHttpSource) delegate).loadItemAsync(manager, reference);
+        }
+
+        return CompletableFuture.supplyAsync(() -> delegate.loadItem(manager, reference), ResolveThreads.getDefault());
+    }
+
+    @Override
+    public boolean isTrackEncodable(AudioTrack track) {
+        // tracks are encoded by their own source manager
+        return false;
+    }
+
+    @Override
+    public void encodeTrack(AudioTrack track, DataOutput output) {
+        throw new UnsupportedOperationException("The router does not own any tracks");
+    }
+
+    @Override
+    public AudioTrack decodeTrack(AudioTrackInfo trackInfo, DataInput input) {
+        return null;
+    }
+
+    @Override
+    public void shutdown() {
+        for (final AudioSourceManager delegate : this.delegates) {
+            delegate.shutdown();
+        }
+    }
+
+    // lavaplayer only passes the http configuration to the router, the decoding sources don't need it
+
+    @Override
+    public void configureRequests(Function<RequestConfig, RequestConfig> configurator) {
+        for (final AudioSourceManager delegate : this.delegates) {
+            if (delegate instanceof HttpConfigurable) {
+                ((HttpConfigurable) delegate).configureRequests(configurator);
+            }
+        }
+    }
+
+    @Override
+    public void configureBuilder(Consumer<HttpClientBuilder> configurator) {
+        for (final AudioSourceManager delegate : this.delegates) {
+            if (delegate instanceof HttpConfigurable) {
+                ((HttpConfigurable) delegate).configureBuilder(configurator);
+            }
+        }
+    }
+
+    /**
+     * Registered under the name of a delegate so lavaplayer can find it when decoding tracks.
+     * It never loads anything, the router does that.
+     */
+    static class DecodingSourceManager implements AudioSourceManager {
+        private final AudioSourceManager delegate;
+
+        DecodingSourceManager(AudioSourceManager delegate) {
+            this.delegate = delegate;
+        }
+
+        @Override
+        public String getSourceName() {
+            return this.delegate.getSourceName();
+        }
+
+        @Override
+        public AudioItem loadItem(AudioPlayerManager manager, AudioReference reference) {
+            return null;
+        }
+
+        @Override
+        public boolean isTrackEncodable(AudioTrack track) {
+            return this.delegate.isTrackEncodable(track);
+        }
+
+        @Override
+        public void encodeTrack(AudioTrack track, DataOutput output) throws IOException {
+            this.delegate.encodeTrack(track, output);
+        }
+
+        @Override
+        public AudioTrack decodeTrack(AudioTrackInfo trackInfo, DataInput input) throws IOException {
+            return this.delegate.decodeTrack(trackInfo, input);
+        }
+
+        @Override
+        public void shutdown() {
+            // The router shuts down the delegate
+        }
+    }
+}
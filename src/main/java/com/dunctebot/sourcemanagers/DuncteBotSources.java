@@ -36,15 +36,10 @@ public class DuncteBotSources {
      * @param speechLanguage The default language for the TTS engine
      */
     public static void registerAll(AudioPlayerManager playerManager, String speechLanguage) {
-        playerManager.registerSourceManager(new GetyarnAudioSourceManager());
-        playerManager.registerSourceManager(new ClypitAudioSourceManager());
-        playerManager.registerSourceManager(new SpeechAudioSourceManager(speechLanguage));
-        playerManager.registerSourceManager(new PornHubAudioSourceManager());
-        playerManager.registerSourceManager(new RedditAudioSourceManager());
-        playerManager.registerSourceManager(new OCRemixAudioSourceManager());
-        playerManager.registerSourceManager(new TikTokAudioSourceManager());
-        playerManager.registerSourceManager(new MixcloudAudioSourceManager());
-        playerManager.registerSourceManager(new SoundGasmAudioSourceManager());
+        final DuncteBotSourceRouter router = createRouter(speechLanguage, true);
+
+        router.registerOnto(playerManager);
+        warmUp(router);
     }
 
     /**
@@ -62,13 +57,44 @@ public class DuncteBotSources {
         final YoutubeAudioSourceManager youtubeSource = playerManager.source(YoutubeAudioSourceManager.class);
         youtubeSource.setPlaylistPageCount(playlistPageCount);
 
-        playerManager.registerSourceManager(new GetyarnAudioSourceManager());
-        playerManager.registerSourceManager(new ClypitAudioSourceManager());
-        playerManager.registerSourceManager(new SpeechAudioSourceManager(speechLanguage));
-        playerManager.registerSourceManager(new PornHubAudioSourceManager());
-        playerManager.registerSourceManager(new RedditAudioSourceManager());
-        playerManager.registerSourceManager(new OCRemixAudioSourceManager());
-        playerManager.registerSourceManager(new TikTokAudioSourceManager());
-        playerManager.registerSourceManager(new SoundGasmAudioSourceManager());
+        final DuncteBotSourceRouter router = createRouter(speechLanguage, false);
+
+        router.registerOnto(playerManager);
+        warmUp(router);
+    }
+
+    private static void warmUp(DuncteBotSourceRouter router) {
+        // failures don't matter, the sessions also get their cookies from the first video pages
+        router.source(TikTokAudioSourceManager.class).warmUp();
+    }
+
+    /**
+     * Creates a router that knows about all of our source managers.
+     * Use {@link DuncteBotSourceRouter#source(Class)} to get a specific source manager from it.
+     *
+     * @param speechLanguage The default language for the TTS engine
+     * @param withMixcloud If the mixcloud source should be included
+     *
+     * @return The router with all source managers registered
+     */
+    public static DuncteBotSourceRouter createRouter(String speechLanguage, boolean withMixcloud) {
+        final DuncteBotSourceRouter router = new DuncteBotSourceRouter()
+            .register(new GetyarnAudioSourceManager(), "getyarn.io")
+            .register(new ClypitAudioSourceManager(), "clyp.it")
+            .registerPrefix(new SpeechAudioSourceManager(speechLanguage), "speak:")
+            .register(new PornHubAudioSourceManager(), "pornhub.com", "pornhub.net", "pornhub.org")
+            .register(new RedditAudioSourceManager(), "reddit.com", "redd.it");
+
+        final OCRemixAudioSourceManager ocRemix = new OCRemixAudioSourceManager();
+
+        router.register(ocRemix, "ocremix.org")
+            .registerPrefix(ocRemix, "OCR")
+            .register(new TikTokAudioSourceManager(), "tiktok.com");
+
+        if (withMixcloud) {
+            router.register(new MixcloudAudioSourceManager(), "mixcloud.com");
+        }
+
+        return router.register(new SoundGasmAudioSourceManager(), "soundgasm.net");
     }
 }
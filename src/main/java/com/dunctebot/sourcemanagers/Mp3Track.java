@@ -16,9 +16,11 @@
 
 package com.dunctebot.sourcemanagers;
 
+import com.dunctebot.sourcemanagers.cache.PlaybackUrlCache;
+import com.dunctebot.sourcemanagers.metrics.MeteredHttpStream;
+import com.dunctebot.sourcemanagers.metrics.SourceMetrics;
 import com.sedmelluq.discord.lavaplayer.container.mp3.Mp3AudioTrack;
 import com.sedmelluq.discord.lavaplayer.tools.io.HttpInterface;
-import com.sedmelluq.discord.lavaplayer.tools.io.PersistentHttpStream;
 import com.sedmelluq.discord.lavaplayer.tools.io.SeekableInputStream;
 import com.sedmelluq.discord.lavaplayer.track.AudioTrackInfo;
 import com.sedmelluq.discord.lavaplayer.track.DelegatedAudioTrack;
@@ -27,12 +29,15 @@ import com.sedmelluq.discord.lavaplayer.track.playback.LocalAudioTrackExecutor;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import javax.annotation.Nullable;
 import java.net.URI;
 
 public class Mp3Track extends DelegatedAudioTrack {
     protected static final Logger log = LoggerFactory.getLogger(Mp3Track.class);
 
     private final AbstractDuncteBotHttpSource manager;
+    @Nullable
+    private volatile MeteredHttpStream stream;
 
     public Mp3Track(AudioTrackInfo trackInfo, AbstractDuncteBotHttpSource manager) {
         super(trackInfo);
@@ -51,14 +56,44 @@ public class Mp3Track extends DelegatedAudioTrack {
     }
 
     protected void loadStream(LocalAudioTrackExecutor localExecutor, HttpInterface httpInterface) throws Exception {
+        final SourceMetrics metrics = manager.getMetrics();
+        final long start = System.nanoTime();
         final String trackUrl = getPlaybackUrl();
+        metrics.getPlaybackUrlLatency().recordSince(start);
         log.debug("Starting {} track from URL: {}", manager.getSourceName(), trackUrl);
-        // Setting contentLength (last param) to null makes it default to Long.MAX_VALUE
-        try (PersistentHttpStream stream = new PersistentHttpStream(httpInterface, new URI(trackUrl), this.getTrackDuration())) {
+        // a local, the field still holds the stream of the previous attempt when opening this one fails
+        final MeteredHttpStream stream = this.openStream(httpInterface, trackUrl);
+        this.stream = stream;
+
+        try (stream) {
             processDelegate(createAudioTrack(this.trackInfo, stream), localExecutor);
+        } finally {
+            log.debug("Read {} bytes for {} track {}", stream.getBytesRead(), manager.getSourceName(), this.trackInfo.identifier);
         }
     }
 
+    /**
+     * @return The amount of bytes that the stream of this track read so far, 0 when the track did not start yet
+     */
+    public long getBytesRead() {
+        final MeteredHttpStream stream = this.stream;
+
+        return stream == null ? 0L : stream.getBytesRead();
+    }
+
+    /**
+     * @param httpInterface The http interface of the track
+     * @param trackUrl The playback url
+     *
+     * @return The stream to play the track from
+     *
+     * @throws Exception When opening the stream fails
+     */
+    protected MeteredHttpStream openStream(HttpInterface httpInterface, String trackUrl) throws Exception {
+        // Setting contentLength (last param) to null makes it default to Long.MAX_VALUE
+        return new MeteredHttpStream(httpInterface, new URI(trackUrl), this.getTrackDuration(), this.manager.getMetrics());
+    }
+
     protected InternalAudioTrack createAudioTrack(AudioTrackInfo trackInfo, SeekableInputStream stream) {
         return new Mp3AudioTrack(trackInfo, stream);
     }
@@ -75,6 +110,65 @@ public class Mp3Track extends DelegatedAudioTrack {
         return this.trackInfo.identifier;
     }
 
+    /**
+     * @return The playback url that this track resolved, this is stored when the track is encoded.
+     * Null when the url was not resolved yet or when the track does not need to resolve one.
+     */
+    @Nullable
+    public ResolvedStream getResolvedStream() {
+        return null;
+    }
+
+    /**
+     * Restores the playback url from a decoded track, so the track can start without resolving it again
+     *
+     * @param stream The stream that was stored in the encoded track
+     */
+    public void restoreResolvedStream(ResolvedStream stream) {
+        // Nothing to restore by default
+    }
+
+    /**
+     * @param cacheKey The key that the track uses in the {@link PlaybackUrlCache}
+     * @param container The container of the stream
+     *
+     * @return The url from the playback url cache, or null if it is not cached
+     */
+    @Nullable
+    protected ResolvedStream getCachedStream(String cacheKey, ResolvedStream.Container container) {
+        final Pair<String, Long> cached = this.manager.getPlaybackUrlCache().peek(this.manager.getSourceName(), cacheKey);
+
+        if (cached == null) {
+            return null;
+        }
+
+        return new ResolvedStream(cached.getLeft(), cached.getRight(), container, null);
+    }
+
+    /**
+     * Puts a restored url back in the playback url cache
+     *
+     * @param cacheKey The key that the track uses in the {@link PlaybackUrlCache}
+     * @param stream The restored stream
+     */
+    protected void restoreCachedStream(String cacheKey, ResolvedStream stream) {
+        this.manager.getPlaybackUrlCache().put(
+            this.manager.getSourceName(),
+            cacheKey,
+            stream.getUrl(),
+            stream.getExpiresAt()
+        );
+    }
+
+    /**
+     * When a track with a {@link ResolvedStream} is decoded from an input without mark/reset, lavaplayer reads the
+     * start of that block as the position. The real position is lost then, the track starts from the beginning.
+     */
+    @Override
+    public void setPosition(long position) {
+        super.setPosition(ResolvedStream.isUnreadBlock(position) ? 0L : position);
+    }
+
     @Override
     public AbstractDuncteBotHttpSource getSourceManager() {
         return manager;
@@ -0,0 +1,74 @@
+/*
+ * Copyright 2026 Duncan "duncte123" Sterken
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package com.dunctebot.sourcemanagers;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Creates the executor that asynchronous loads run on.
+ *
+ * This is the Java 11 version, it uses a bounded pool of platform threads. On Java 21 and newer the jar contains a
+ * version of this class in {@code META-INF/versions/21} that uses a virtual thread per load instead.
+ */
+final class ResolveThreads {
+    private static final int POOL_SIZE = Math.max(16, Runtime.getRuntime().availableProcessors() * 4);
+
+    private ResolveThreads() {
+    }
+
+    /**
+     * @return The executor that is shared by all sources unless they are given their own
+     */
+    static ExecutorService getDefault() {
+        return DefaultHolder.EXECUTOR;
+    }
+
+    static ExecutorService create() {
+        final AtomicInteger counter = new AtomicInteger();
+        final ThreadFactory factory = (runnable) -> {
+            final Thread thread = new Thread(runnable, "dunctebot-resolve-" + counter.incrementAndGet());
+
+            thread.setDaemon(true);
+
+            return thread;
+        };
+        final ThreadPoolExecutor executor = new ThreadPoolExecutor(
+            POOL_SIZE, POOL_SIZE, 60L, TimeUnit.SECONDS, new LinkedBlockingQueue<>(), factory
+        );
+
+        executor.allowCoreThreadTimeOut(true);
+
+        return executor;
+    }
+
+    /**
+     * @return true if every load gets its own virtual thread
+     */
+    static boolean isVirtual() {
+        return false;
+    }
+
+    // only create the threads when someone actually loads asynchronously
+    private static final class DefaultHolder {
+        private static final ExecutorService EXECUTOR = create();
+    }
+}
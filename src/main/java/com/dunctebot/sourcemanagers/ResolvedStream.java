@@ -0,0 +1,213 @@
+/*
+ * Copyright 2026 Duncan "duncte123" Sterken
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package com.dunctebot.sourcemanagers;
+
+import javax.annotation.Nullable;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * A playback url that was resolved for a track, it is stored in the encoded track so a decoded track can start
+ * playing without scraping the source again while the url is still valid.
+ *
+ * The data is written after the track info as a versioned block, starting with a magic number so tracks that were
+ * encoded before this block existed still decode. Lavaplayer reads the position right after it, so the magic number
+ * is looked for with mark/reset. Older versions of this library can't decode tracks with this block.
+ */
+public final class ResolvedStream {
+    // "DBRS", a position in milliseconds never starts with these bytes
+    private static final int MAGIC = 0x44425253;
+    private static final int VERSION = 1;
+    // don't start streaming on a url that is about to expire
+    private static final long EXPIRY_MARGIN = 30_000L;
+
+    private final String url;
+    private final long expiresAt;
+    private final Container container;
+    @Nullable
+    private final ResolvedStream fallback;
+
+    /**
+     * @param url The playback url
+     * @param expiresAt When the url stops working as unix timestamp in milliseconds
+     * @param container The container of the stream that the url points to
+     * @param fallback The stream to use when this one fails
+     */
+    public ResolvedStream(String url, long expiresAt, Container container, @Nullable ResolvedStream fallback) {
+        this.url = url;
+        this.expiresAt = expiresAt;
+        this.container = container;
+        this.fallback = fallback;
+    }
+
+    public String getUrl() {
+        return this.url;
+    }
+
+    public long getExpiresAt() {
+        return this.expiresAt;
+    }
+
+    public Container getContainer() {
+        return this.container;
+    }
+
+    @Nullable
+    public ResolvedStream getFallback() {
+        return this.fallback;
+    }
+
+    /**
+     * @return true if the url can still be used to start streaming
+     */
+    public boolean isValid() {
+        return this.expiresAt - EXPIRY_MARGIN > System.currentTimeMillis();
+    }
+
+    /**
+     * Writes the stream in the versioned format, writes nothing when there is no stream
+     *
+     * @param stream The stream to write
+     * @param output The output of the encoded track
+     *
+     * @throws IOException When writing fails
+     */
+    public static void write(@Nullable ResolvedStream stream, DataOutput output) throws IOException {
+        if (stream == null || !stream.isValid()) {
+            return;
+        }
+
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        final DataOutputStream body = new DataOutputStream(bytes);
+
+        writeBody(stream, body);
+        body.flush();
+
+        output.writeInt(MAGIC);
+        output.writeByte(VERSION);
+        output.writeShort(bytes.size());
+        output.write(bytes.toByteArray());
+    }
+
+    /**
+     * Reads a stream that was written with {@link #write(ResolvedStream, DataOutput)}
+     *
+     * @param input The input of the encoded track. Lavaplayer passes the stream of the caller on, when that does not
+     *              support mark/reset the block can't be told apart from the position and is dropped, see
+     *              {@link Mp3Track#setPosition(long)}
+     *
+     * @return The stream, or null if the track was encoded without one, with a newer version, if it expired or if the
+     * input does not support mark/reset
+     *
+     * @throws IOException When reading fails
+     */
+    @Nullable
+    public static ResolvedStream read(DataInput input) throws IOException {
+        // without a block the next thing in the input is the position of the track, we must not consume that
+        if (!(input instanceof InputStream) || !((InputStream) input).markSupported()) {
+            return null;
+        }
+
+        final InputStream stream = (InputStream) input;
+
+        stream.mark(4);
+
+        if (input.readInt() != MAGIC) {
+            stream.reset();
+            return null;
+        }
+
+        final int version = input.readUnsignedByte();
+        final int length = input.readUnsignedShort();
+
+        if (version != VERSION) {
+            // written by a newer version, skip what we don't understand
+            input.skipBytes(length);
+            return null;
+        }
+
+        final ResolvedStream resolved = readBody(input);
+
+        return resolved.isValid() ? resolved : null;
+    }
+
+    /**
+     * @param position A position that lavaplayer read after the track details
+     *
+     * @return true if the position is actually the start of a block that could not be read, see {@link #read(DataInput)}
+     */
+    static boolean isUnreadBlock(long position) {
+        return (position >>> 32) == MAGIC;
+    }
+
+    private static void writeBody(ResolvedStream stream, DataOutput output) throws IOException {
+        output.writeUTF(stream.url);
+        output.writeLong(stream.expiresAt);
+        output.writeByte(stream.container.ordinal());
+        output.writeBoolean(stream.fallback != null);
+
+        if (stream.fallback != null) {
+            writeBody(stream.fallback, output);
+        }
+    }
+
+    private static ResolvedStream readBody(DataInput input) throws IOException {
+        final String url = input.readUTF();
+        final long expiresAt = input.readLong();
+        final int container = input.readUnsignedByte();
+        final ResolvedStream fallback = input.readBoolean() ? readBody(input) : null;
+
+        return new ResolvedStream(
+            url,
+            expiresAt,
+            container < Container.values().length ? Container.values()[container] : Container.MPEG,
+            fallback
+        );
+    }
+
+    public enum Container {
+        MP3,
+        MPEG;
+
+        /**
+         * @param header The first bytes of a stream
+         * @param length The amount of bytes in the header
+         *
+         * @return true if the stream looks like it is in this container
+         */
+        public boolean matches(byte[] header, int length) {
+            if (this == MP3) {
+                // an id3 tag or the sync word of the first frame
+                return (length >= 3 && header[0] == 'I' && header[1] == 'D' && header[2] == '3') ||
+                    (length >= 2 && (header[0] & 0xFF) == 0xFF && (header[1] & 0xE0) == 0xE0);
+            }
+
+            if (length < 8) {
+                return false;
+            }
+
+            final String atom = new String(header, 4, 4, StandardCharsets.ISO_8859_1);
+
+            return "ftyp".equals(atom) || "styp".equals(atom) || "moov".equals(atom) || "free".equals(atom);
+        }
+    }
+}
@@ -65,8 +65,8 @@ public class Utils {
         request.setHeader("DNT", "1");
         request.setHeader("Upgrade-Insecure-Requests", "1");
         request.setHeader("Accept", "text/html,application/xhtml+xml,application/xml;q=0.9,video/mp4,image/avif,image/webp,*/*;q=0.8");
-//        request.setHeader("Accept-Encoding", "gzip, deflate, br");
-        request.setHeader("Accept-Encoding", "none");
+        // Accept-Encoding is added by the client, it only asks for the encodings that it can decode
+        request.removeHeaders("Accept-Encoding");
         request.setHeader("TE", "trailers");
         request.setHeader("Accept-Language", "en-US,en;q=0.9");
 
@@ -0,0 +1,187 @@
+/*
+ * Copyright 2026 Duncan "duncte123" Sterken
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+
+package com.dunctebot.sourcemanagers.cache;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+
+/**
+ * Groups loads that arrive within a short window into a single call of a loader that accepts many keys.
+ *
+ * The first caller of a batch waits for the window to pass, or for the batch to fill up, and then runs the loader
+ * on its own thread. Everyone that joined the batch in the meantime waits for that call and gets the value for their
+ * own key (or the exception of the call). Like {@link SingleFlight} nothing is kept once a batch finishes.
+ *
+ * @param <K> The type of the key
+ * @param <V> The type of the loaded value
+ */
+public class BatchLoader<K, V> {
+    private final Function<List<K>, Map<K, V>> loader;
+    private final int maxBatchSize;
+    private final Object lock = new Object();
+    private final LongAdder batches = new LongAdder();
+    private final LongAdder keys = new LongAdder();
+    private volatile long windowNanos;
+    // guarded by lock
+    private Batch<K, V> pending;
+
+    /**
+     * @param loader Loads the values for a list of keys, keys that are missing from the returned map get null
+     * @param maxBatchSize The maximum amount of keys that are passed to the loader at once
+     * @param window How long the first caller of a batch waits for others to join
+     * @param unit The unit of the window
+     */
+    public BatchLoader(Function<List<K>, Map<K, V>> loader, int maxBatchSize, long window, TimeUnit unit) {
+        if (maxBatchSize < 1) {
+            throw new IllegalArgumentException("maxBatchSize must be at least 1");
+        }
+
+        this.loader = loader;
+        this.maxBatchSize = maxBatchSize;
+        this.setWindow(window, unit);
+    }
+
+    public V load(K key) {
+        final Batch<K, V> batch;
+        final CompletableFuture<V> future;
+        final boolean leader;
+
+        synchronized (this.lock) {
+            leader = this.pending == null;
+
+            if (leader) {
+                this.pending = new Batch<>();
+            }
+
+            batch = this.pending;
+            future = batch.entries.computeIfAbsent(key, (k) -> new CompletableFuture<>());
+
+            // a full batch can't take more keys, the next caller starts a new one
+            if (batch.entries.size() >= this.maxBatchSize) {
+                this.pending = null;
+                batch.full.countDown();
+            }
+        }
+
+        if (leader) {
+            this.runBatch(batch);
+        }
+
+        return await(future);
+    }
+
+    private void runBatch(Batch<K, V> batch) {
+        try {
+            if (!batch.full.await(this.windowNanos, TimeUnit.NANOSECONDS)) {
+                synchronized (this.lock) {
+                    if (this.pending == batch) {
+                        this.pending = null;
+                    }
+                }
+            }
+        } catch (InterruptedException e) {
+            // load what we have, the caller can deal with the interrupt
+            Thread.currentThread().interrupt();
+
+            synchronized (this.lock) {
+                if (this.pending == batch) {
+                    this.pending = null;
+                }
+            }
+        }
+
+        final List<K> batchKeys;
+
+        // the batch is closed, this only makes sure we see every key that was added
+        synchronized (this.lock) {
+            batchKeys = new ArrayList<>(batch.entries.keySet());
+        }
+
+        this.batches.increment();
+        this.keys.add(batchKeys.size());
+
+        try {
+            final Map<K, V> values = this.loader.apply(batchKeys);
+
+            for (final K key : batchKeys) {
+                batch.entries.get(key).complete(values.get(key));
+            }
+        } catch (Throwable t) {
+            for (final CompletableFuture<V> future : batch.entries.values()) {
+                future.completeExceptionally(t);
+            }
+        }
+    }
+
+    private static <V> V await(CompletableFuture<V> future) {
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            final Throwable cause = e.getCause();
+
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+
+            if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+
+            throw e;
+        }
+    }
+
+    /**
+     * @param window How long the first caller of a batch waits for others to join, 0 to never wait
+     * @param unit The unit of the window
+     */
+    public void setWindow(long window, TimeUnit unit) {
+        this.windowNanos = Math.max(0L, unit.toNanos(window));
+    }
+
+    public long getWindow(TimeUnit unit) {
+        return unit.convert(this.windowNanos, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * @return How many times the loader was called
+     */
+    public long getBatchCount() {
+        return this.batches.sum();
+    }
+
+    /**
+     * @return How many keys were loaded in total, divide by {@link #getBatchCount()} for the average batch size
+     */
+    public long getLoadedKeyCount() {
+        return this.keys.sum();
+    }
+
+    private static final class Batch<K, V> {
+        private final Map<K, CompletableFuture<V>> entries = new LinkedHashMap<>();
+        private final CountDownLatch full = new CountDownLatch(1);
+    }
+}
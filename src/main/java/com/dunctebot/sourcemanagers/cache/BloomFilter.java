@@ -0,0 +1,109 @@
+/*
+ * Copyright 2026 Duncan "duncte123" Sterken
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package com.dunctebot.sourcemanagers.cache;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A thread safe bloom filter for strings, it can tell for sure that a key was never added
+ * and says a key was added with a small chance of being wrong.
+ */
+class BloomFilter {
+    private final AtomicLongArray bits;
+    private final long bitCount;
+    private final int hashCount;
+
+    /**
+     * @param expectedInsertions How many keys we expect to add
+     * @param falsePositiveRate The chance that {@link #mightContain(String)} returns true for a key that was not added
+     */
+    BloomFilter(int expectedInsertions, double falsePositiveRate) {
+        final long optimalBits = (long) Math.ceil(
+            -expectedInsertions * Math.log(falsePositiveRate) / (Math.log(2) * Math.log(2))
+        );
+        final int words = (int) Math.max(1L, (optimalBits + 63L) / 64L);
+
+        this.bits = new AtomicLongArray(words);
+        this.bitCount = words * 64L;
+        this.hashCount = Math.max(1, (int) Math.round((double) this.bitCount / expectedInsertions * Math.log(2)));
+    }
+
+    void put(String key) {
+        final long hash1 = hash(key);
+        final long hash2 = mix(hash1 ^ 0x9e3779b97f4a7c15L) | 1L;
+
+        for (int i = 0; i < this.hashCount; i++) {
+            final long bit = Long.remainderUnsigned(hash1 + i * hash2, this.bitCount);
+            final int word = (int) (bit >>> 6);
+            final long mask = 1L << bit;
+
+            long current;
+
+            do {
+                current = this.bits.get(word);
+
+                if ((current & mask) != 0L) {
+                    break;
+                }
+            } while (!this.bits.compareAndSet(word, current, current | mask));
+        }
+    }
+
+    boolean mightContain(String key) {
+        final long hash1 = hash(key);
+        final long hash2 = mix(hash1 ^ 0x9e3779b97f4a7c15L) | 1L;
+
+        for (int i = 0; i < this.hashCount; i++) {
+            final long bit = Long.remainderUnsigned(hash1 + i * hash2, this.bitCount);
+
+            if ((this.bits.get((int) (bit >>> 6)) & (1L << bit)) == 0L) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    /**
+     * @return The size of the filter in bytes
+     */
+    long getSizeInBytes() {
+        return this.bitCount / 8L;
+    }
+
+    // FNV-1a over the chars, finished with a mix so all bits depend on the whole key
+    private static long hash(String key) {
+        long hash = 0xcbf29ce484222325L;
+
+        for (int i = 0; i < key.length(); i++) {
+            hash ^= key.charAt(i);
+            hash *= 0x100000001b3L;
+        }
+
+        return mix(hash);
+    }
+
+    private static long mix(long h) {
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+
+        return h;
+    }
+}
@@ -0,0 +1,113 @@
+/*
+ * Copyright 2026 Duncan "duncte123" Sterken
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package com.dunctebot.sourcemanagers.cache;
+
+/**
+ * A count-min sketch with 4-bit counters that estimates how often a key was seen recently.
+ * Sixteen counters are packed in a long, so the sketch takes {@code DEPTH * width / 2} bytes.
+ *
+ * All counters are halved once {@code 10 * width} keys have been recorded, so keys that were popular a long time ago
+ * slowly lose their advantage. This class is not thread safe, callers need to synchronize.
+ */
+class FrequencySketch {
+    private static final int DEPTH = 4;
+    private static final int MAX_COUNT = 15;
+    private static final long[] SEEDS = {
+        0x97cb3127L, 0xc3a5c85cL, 0x9ae16a3bL, 0x2545f491L
+    };
+
+    // halving a whole word shifts the lowest bit of every counter into the one below it, this clears those bits
+    private static final long HALF_MASK = 0x7777777777777777L;
+
+    private final long[][] counters;
+    private final int mask;
+    private final int sampleSize;
+    private int additions = 0;
+
+    /**
+     * @param expectedKeys The amount of keys that we expect to track, rounded up to a power of two
+     */
+    FrequencySketch(int expectedKeys) {
+        final int width = Integer.highestOneBit(Math.max(16, expectedKeys - 1) << 1);
+
+        // the width is at least 32, so it is always a multiple of the 16 counters in a word
+        this.counters = new long[DEPTH][width >>> 4];
+        this.mask = width - 1;
+        this.sampleSize = width * 10;
+    }
+
+    void increment(String key) {
+        final int hash = spread(key.hashCode());
+        boolean added = false;
+
+        for (int i = 0; i < DEPTH; i++) {
+            final int index = indexOf(hash, i);
+
+            if (this.get(i, index) < MAX_COUNT) {
+                this.counters[i][index >>> 4] += 1L << shiftOf(index);
+                added = true;
+            }
+        }
+
+        if (added && ++this.additions >= this.sampleSize) {
+            this.reset();
+        }
+    }
+
+    int frequency(String key) {
+        final int hash = spread(key.hashCode());
+        int frequency = MAX_COUNT;
+
+        for (int i = 0; i < DEPTH; i++) {
+            frequency = Math.min(frequency, this.get(i, indexOf(hash, i)));
+        }
+
+        return frequency;
+    }
+
+    private void reset() {
+        for (final long[] row : this.counters) {
+            for (int i = 0; i < row.length; i++) {
+                row[i] = (row[i] >>> 1) & HALF_MASK;
+            }
+        }
+
+        this.additions /= 2;
+    }
+
+    private int get(int row, int index) {
+        return (int) ((this.counters[row][index >>> 4] >>> shiftOf(index)) & 0xFL);
+    }
+
+    private static int shiftOf(int index) {
+        return (index & 15) << 2;
+    }
+
+    private int indexOf(int hash, int row) {
+        long h = (hash + SEEDS[row]) * SEEDS[row];
+        h += h >>> 32;
+
+        return ((int) h) & this.mask;
+    }
+
+    private static int spread(int x) {
+        x = ((x >>> 16) ^ x) * 0x45d9f3b;
+        x = ((x >>> 16) ^ x) * 0x45d9f3b;
+
+        return (x >>> 16) ^ x;
+    }
+}
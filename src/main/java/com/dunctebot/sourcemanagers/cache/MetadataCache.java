@@ -0,0 +1,273 @@
+/*
+ * Copyright 2026 Duncan "duncte123" Sterken
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package com.dunctebot.sourcemanagers.cache;
+
+import com.sedmelluq.discord.lavaplayer.track.AudioTrack;
+import com.sedmelluq.discord.lavaplayer.track.AudioTrackInfo;
+
+import javax.annotation.Nullable;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Caches the tracks that {@code loadItem} produced so repeat loads don't go to the network.
+ *
+ * The cache is bounded by the estimated size of the cached {@link AudioTrackInfo}s in bytes. When it is full a new
+ * track only gets in if it has been asked for more often than the least recently used track in the cache, this
+ * keeps one-off links from pushing out the tracks that are played over and over.
+ * Every source can have its own ttl, see {@link #setTtl(String, long, TimeUnit)}.
+ */
+public class MetadataCache {
+    private static final long DEFAULT_TTL = TimeUnit.MINUTES.toMillis(10);
+    // object headers, references and the fields of the track info
+    private static final int ENTRY_OVERHEAD = 160;
+
+    private final long maxBytes;
+    private final Map<String, CachedTrack> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private final FrequencySketch sketch;
+    private final Map<String, Long> sourceTtls = new ConcurrentHashMap<>();
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+    private final LongAdder rejections = new LongAdder();
+    private long currentBytes = 0L;
+
+    /**
+     * @param maxBytes The maximum estimated size of all cached track info
+     */
+    public MetadataCache(long maxBytes) {
+        this.maxBytes = maxBytes;
+        // assume an average entry of about 512 bytes
+        this.sketch = new FrequencySketch((int) Math.min(1 << 20, Math.max(64L, maxBytes / 512L)));
+    }
+
+    /**
+     * Sets how long tracks of a source stay in the cache
+     *
+     * @param source The name of the source
+     * @param ttl The time to live
+     * @param unit The unit of the time to live
+     */
+    public void setTtl(String source, long ttl, TimeUnit unit) {
+        this.sourceTtls.put(source, unit.toMillis(ttl));
+    }
+
+    /**
+     * @param source The name of the source
+     * @param key The normalized identifier of the track
+     *
+     * @return A fresh copy of the cached track, or null if it is not cached
+     */
+    @Nullable
+    public AudioTrack get(String source, String key) {
+        final String cacheKey = key(source, key);
+        final AudioTrack track;
+
+        synchronized (this) {
+            this.sketch.increment(cacheKey);
+
+            final CachedTrack entry = this.entries.get(cacheKey);
+
+            if (entry == null) {
+                track = null;
+            } else if (entry.expiresAt <= System.currentTimeMillis()) {
+                this.remove(cacheKey);
+                track = null;
+            } else {
+                track = entry.track;
+            }
+        }
+
+        if (track == null) {
+            this.misses.increment();
+            return null;
+        }
+
+        this.hits.increment();
+        return track.makeClone();
+    }
+
+    /**
+     * Stores a track, the cache keeps its own copy so the track can still be played by the caller
+     *
+     * @param source The name of the source
+     * @param key The normalized identifier of the track
+     * @param track The track to cache
+     */
+    public void put(String source, String key, AudioTrack track) {
+        final long ttl = this.sourceTtls.getOrDefault(source, DEFAULT_TTL);
+
+        if (ttl <= 0L) {
+            return;
+        }
+
+        final String cacheKey = key(source, key);
+        final CachedTrack entry = new CachedTrack(
+            track.makeClone(),
+            estimateSize(cacheKey, track.getInfo()),
+            System.currentTimeMillis() + ttl
+        );
+
+        if (entry.size > this.maxBytes) {
+            return;
+        }
+
+        synchronized (this) {
+            this.remove(cacheKey);
+
+            if (!this.makeRoomFor(cacheKey, entry.size)) {
+                this.rejections.increment();
+                return;
+            }
+
+            this.entries.put(cacheKey, entry);
+            this.currentBytes += entry.size;
+        }
+    }
+
+    // must hold the lock
+    private boolean makeRoomFor(String cacheKey, int size) {
+        final long now = System.currentTimeMillis();
+        final int candidateFrequency = this.sketch.frequency(cacheKey);
+        final Iterator<Map.Entry<String, CachedTrack>> iterator = this.entries.entrySet().iterator();
+
+        while (this.currentBytes + size > this.maxBytes && iterator.hasNext()) {
+            final Map.Entry<String, CachedTrack> victim = iterator.next();
+            final CachedTrack victimEntry = victim.getValue();
+
+            // expired entries can always go, live ones only make way for something that is more popular
+            if (victimEntry.expiresAt > now && this.sketch.frequency(victim.getKey()) >= candidateFrequency) {
+                return false;
+            }
+
+            iterator.remove();
+            this.currentBytes -= victimEntry.size;
+            this.evictions.increment();
+        }
+
+        return this.currentBytes + size <= this.maxBytes;
+    }
+
+    // must hold the lock
+    private void remove(String cacheKey) {
+        final CachedTrack removed = this.entries.remove(cacheKey);
+
+        if (removed != null) {
+            this.currentBytes -= removed.size;
+        }
+    }
+
+    /**
+     * Removes a single track from the cache
+     *
+     * @param source The name of the source
+     * @param key The normalized identifier of the track
+     */
+    public synchronized void invalidate(String source, String key) {
+        this.remove(key(source, key));
+    }
+
+    /**
+     * Removes all tracks of a source from the cache
+     *
+     * @param source The name of the source
+     */
+    public synchronized void invalidateSource(String source) {
+        final String prefix = source + ':';
+        final Iterator<Map.Entry<String, CachedTrack>> iterator = this.entries.entrySet().iterator();
+
+        while (iterator.hasNext()) {
+            final Map.Entry<String, CachedTrack> entry = iterator.next();
+
+            if (entry.getKey().startsWith(prefix)) {
+                iterator.remove();
+                this.currentBytes -= entry.getValue().size;
+            }
+        }
+    }
+
+    public synchronized void invalidateAll() {
+        this.entries.clear();
+        this.currentBytes = 0L;
+    }
+
+    public synchronized int size() {
+        return this.entries.size();
+    }
+
+    /**
+     * @return The estimated size of everything that is in the cache in bytes
+     */
+    public synchronized long getWeightedSize() {
+        return this.currentBytes;
+    }
+
+    public long getHits() {
+        return this.hits.sum();
+    }
+
+    public long getMisses() {
+        return this.misses.sum();
+    }
+
+    public long getEvictions() {
+        return this.evictions.sum();
+    }
+
+    /**
+     * @return How many tracks were not cached because they were less popular than what is already in the cache
+     */
+    public long getRejections() {
+        return this.rejections.sum();
+    }
+
+    private static String key(String source, String key) {
+        return source + ':' + key;
+    }
+
+    private static int estimateSize(String cacheKey, AudioTrackInfo info) {
+        return ENTRY_OVERHEAD + 2 * (
+            cacheKey.length() +
+                length(info.title) +
+                length(info.author) +
+                length(info.identifier) +
+                length(info.uri) +
+                length(info.artworkUrl) +
+                length(info.isrc)
+        );
+    }
+
+    private static int length(@Nullable String value) {
+        return value == null ? 0 : value.length();
+    }
+
+    private static final class CachedTrack {
+        private final AudioTrack track;
+        private final int size;
+        private final long expiresAt;
+
+        private CachedTrack(AudioTrack track, int size, long expiresAt) {
+            this.track = track;
+            this.size = size;
+            this.expiresAt = expiresAt;
+        }
+    }
+}
@@ -0,0 +1,324 @@
+/*
+ * Copyright 2026 Duncan "duncte123" Sterken
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package com.dunctebot.sourcemanagers.cache;
+
+import com.sedmelluq.discord.lavaplayer.tools.FriendlyException;
+import com.sedmelluq.discord.lavaplayer.track.AudioItem;
+import com.sedmelluq.discord.lavaplayer.track.AudioReference;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.annotation.Nullable;
+import java.io.IOException;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Remembers identifiers that are dead or unavailable for a short while, so retries don't go to the network.
+ *
+ * Dead keys are not stored, they are added to a bloom filter together with the index of the reason they failed.
+ * There are only a handful of distinct reasons ("This video is not available", no track, ...) so those are kept
+ * in a small table. Two generations of filters are used, every half ttl the oldest generation is thrown away,
+ * this means that a key is remembered for somewhere between half the ttl and the full ttl.
+ *
+ * Because this is a bloom filter there is a small chance ({@code falsePositiveRate}) that a working identifier
+ * is reported as dead until its generation is dropped.
+ */
+public class NegativeCache {
+    private static final NegativeCache DEFAULT = new NegativeCache(65536, 0.0001, 60, TimeUnit.SECONDS);
+    private static final int MAX_REASONS = 64;
+    private static final Logger log = LoggerFactory.getLogger(NegativeCache.class);
+
+    private final int expectedInsertions;
+    private final double falsePositiveRate;
+    private final long rotateInterval;
+    private final List<Failure> reasons = new CopyOnWriteArrayList<>();
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder recorded = new LongAdder();
+    private final LongAdder dropped = new LongAdder();
+
+    private volatile BloomFilter current;
+    private volatile BloomFilter previous;
+    private volatile long rotatedAt;
+    // guarded by reasons
+    private boolean warnedFull = false;
+
+    /**
+     * @param expectedInsertions How many dead keys we expect within half the ttl
+     * @param falsePositiveRate The chance that a live key is reported as dead
+     * @param ttl How long a dead key is remembered at most
+     * @param unit The unit of the ttl
+     */
+    public NegativeCache(int expectedInsertions, double falsePositiveRate, long ttl, TimeUnit unit) {
+        this.expectedInsertions = expectedInsertions;
+        this.falsePositiveRate = falsePositiveRate;
+        this.rotateInterval = Math.max(1L, unit.toMillis(ttl) / 2L);
+        this.current = this.newFilter();
+        this.previous = this.newFilter();
+        this.rotatedAt = System.currentTimeMillis();
+    }
+
+    /**
+     * @return The cache that is shared by all source managers unless they are given their own
+     */
+    public static NegativeCache getDefault() {
+        return DEFAULT;
+    }
+
+    /**
+     * @param source The name of the source
+     * @param key The normalized identifier
+     *
+     * @return The reason this key failed recently, or null if it did not
+     */
+    @Nullable
+    public Failure get(String source, String key) {
+        this.rotateIfNeeded();
+
+        final String cacheKey = source + ':' + key;
+        final BloomFilter current = this.current;
+        final BloomFilter previous = this.previous;
+
+        if (!current.mightContain(cacheKey) && !previous.mightContain(cacheKey)) {
+            return null;
+        }
+
+        for (int i = 0; i < this.reasons.size(); i++) {
+            final String reasonKey = cacheKey + '#' + i;
+
+            if (current.mightContain(reasonKey) || previous.mightContain(reasonKey)) {
+                this.hits.increment();
+                return this.reasons.get(i);
+            }
+        }
+
+        return null;
+    }
+
+    /**
+     * Remembers that a key failed
+     *
+     * @param source The name of the source
+     * @param key The normalized identifier
+     * @param failure Why the key failed
+     */
+    public void put(String source, String key, Failure failure) {
+        this.rotateIfNeeded();
+
+        final int reason = this.reasonIndex(failure);
+
+        if (reason == -1) {
+            this.dropped.increment();
+            return;
+        }
+
+        final String cacheKey = source + ':' + key;
+        final BloomFilter current = this.current;
+
+        current.put(cacheKey + '#' + reason);
+        current.put(cacheKey);
+        this.recorded.increment();
+    }
+
+    private int reasonIndex(Failure failure) {
+        final int index = this.reasons.indexOf(failure);
+
+        if (index != -1) {
+            return index;
+        }
+
+        synchronized (this.reasons) {
+            final int existing = this.reasons.indexOf(failure);
+
+            if (existing != -1) {
+                return existing;
+            }
+
+            // Reasons with variable messages would grow this forever, just don't cache those
+            if (this.reasons.size() >= MAX_REASONS) {
+                if (!this.warnedFull) {
+                    this.warnedFull = true;
+                    log.warn("The negative cache knows {} reasons already, new reasons are not cached", MAX_REASONS);
+                }
+
+                return -1;
+            }
+
+            this.reasons.add(failure);
+
+            return this.reasons.size() - 1;
+        }
+    }
+
+    private void rotateIfNeeded() {
+        final long now = System.currentTimeMillis();
+
+        if (now - this.rotatedAt < this.rotateInterval) {
+            return;
+        }
+
+        synchronized (this) {
+            if (now - this.rotatedAt < this.rotateInterval) {
+                return;
+            }
+
+            // More than a full ttl passed, everything we know is stale
+            if (now - this.rotatedAt >= this.rotateInterval * 2L) {
+                this.previous = this.newFilter();
+            } else {
+                this.previous = this.current;
+            }
+
+            this.current = this.newFilter();
+            this.rotatedAt = now;
+        }
+    }
+
+    private BloomFilter newFilter() {
+        // every failure adds two keys to the filter
+        return new BloomFilter(this.expectedInsertions * 2, this.falsePositiveRate);
+    }
+
+    /**
+     * Forgets every dead key
+     */
+    public synchronized void clear() {
+        this.previous = this.newFilter();
+        this.current = this.newFilter();
+        this.rotatedAt = System.currentTimeMillis();
+    }
+
+    public long getHits() {
+        return this.hits.sum();
+    }
+
+    /**
+     * @return How many failures were remembered in total
+     */
+    public long getRecorded() {
+        return this.recorded.sum();
+    }
+
+    /**
+     * @return How many failures were not remembered because the table of reasons was full
+     */
+    public long getDropped() {
+        return this.dropped.sum();
+    }
+
+    /**
+     * @return The memory that the filters use in bytes
+     */
+    public long getSizeInBytes() {
+        return this.current.getSizeInBytes() + this.previous.getSizeInBytes();
+    }
+
+    /**
+     * Why loading an identifier failed, only failures that are not expected to change on a retry should be cached.
+     */
+    public static final class Failure {
+        private static final Failure NO_TRACK = new Failure(null, null, null);
+
+        @Nullable
+        private final FriendlyException.Severity severity;
+        @Nullable
+        private final String message;
+        @Nullable
+        private final String causeMessage;
+
+        private Failure(@Nullable FriendlyException.Severity severity, @Nullable String message, @Nullable String causeMessage) {
+            this.severity = severity;
+            this.message = message;
+            this.causeMessage = causeMessage;
+        }
+
+        /**
+         * @return The failure for items that loaded as {@link AudioReference#NO_TRACK}
+         */
+        public static Failure noTrack() {
+            return NO_TRACK;
+        }
+
+        /**
+         * @param exception The exception that a load failed with
+         *
+         * @return true if the exception is a common failure that was not caused by a network error,
+         * network errors are expected to go away on a retry
+         */
+        public static boolean isPermanent(FriendlyException exception) {
+            if (exception.severity != FriendlyException.Severity.COMMON) {
+                return false;
+            }
+
+            for (Throwable cause = exception.getCause(); cause != null; cause = cause.getCause()) {
+                if (cause instanceof IOException) {
+                    return false;
+                }
+            }
+
+            return true;
+        }
+
+        public static Failure of(FriendlyException exception) {
+            final Throwable cause = exception.getCause();
+
+            return new Failure(exception.severity, exception.getMessage(), cause == null ? null : cause.getMessage());
+        }
+
+        /**
+         * Replays the failure, either returns {@link AudioReference#NO_TRACK} or throws the original exception again
+         *
+         * @return {@link AudioReference#NO_TRACK}
+         */
+        public AudioItem replay() {
+            if (this.severity == null) {
+                return AudioReference.NO_TRACK;
+            }
+
+            throw new FriendlyException(
+                this.message,
+                this.severity,
+                this.causeMessage == null ? null : new Exception(this.causeMessage)
+            );
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+
+            if (!(o instanceof Failure)) {
+                return false;
+            }
+
+            final Failure failure = (Failure) o;
+
+            return this.severity == failure.severity &&
+                Objects.equals(this.message, failure.message) &&
+                Objects.equals(this.causeMessage, failure.causeMessage);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(this.severity, this.message, this.causeMessage);
+        }
+    }
+}
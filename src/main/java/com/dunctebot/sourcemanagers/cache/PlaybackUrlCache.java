@@ -0,0 +1,323 @@
+/*
+ * Copyright 2026 Duncan "duncte123" Sterken
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package com.dunctebot.sourcemanagers.cache;
+
+import com.dunctebot.sourcemanagers.Pair;
+import javax.annotation.Nullable;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Caches resolved playback urls so replays, loops and clones don't have to scrape the source again.
+ *
+ * Entries expire at the time that is encoded in the (signed) url, or after the ttl of the source when the url
+ * does not tell us when it expires. The cache holds at most {@code maxEntries} urls, the least recently used
+ * url is dropped first.
+ */
+public class PlaybackUrlCache {
+    private static final PlaybackUrlCache DEFAULT = new PlaybackUrlCache(4096);
+    private static final long DEFAULT_TTL = TimeUnit.MINUTES.toMillis(5);
+    // Don't hand out urls that are about to expire, the stream still needs to be opened
+    private static final long EXPIRY_MARGIN = TimeUnit.SECONDS.toMillis(30);
+    // only names that CDNs use for nothing else, short names like "e" are often ids or hashes
+    private static final List<String> EXPIRY_PARAMS = List.of("expires", "expire", "x-expires", "validto", "exp");
+
+    private final int maxEntries;
+    private final Map<String, CachedUrl> entries;
+    private final Map<String, Long> sourceTtls = new ConcurrentHashMap<>();
+    private final Map<String, List<String>> sourceExpiryParams = new ConcurrentHashMap<>();
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+
+    public PlaybackUrlCache(int maxEntries) {
+        this.maxEntries = maxEntries;
+        this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, CachedUrl> eldest) {
+                return size() > PlaybackUrlCache.this.maxEntries;
+            }
+        };
+    }
+
+    /**
+     * @return The cache that is shared by all source managers unless they are given their own
+     */
+    public static PlaybackUrlCache getDefault() {
+        return DEFAULT;
+    }
+
+    /**
+     * Sets how long urls of a source stay valid when the url itself does not contain an expiry time
+     *
+     * @param source The name of the source
+     * @param ttl The time to live
+     * @param unit The unit of the time to live
+     */
+    public void setTtl(String source, long ttl, TimeUnit unit) {
+        this.sourceTtls.put(source, unit.toMillis(ttl));
+    }
+
+    /**
+     * Adds query parameters that hold the expiry time in the urls of one source, next to the well known ones
+     *
+     * @param source The name of the source
+     * @param params The names of the parameters, eg {@code e} when the CDN of the source uses that for the expiry
+     */
+    public void setExpiryParams(String source, String... params) {
+        final List<String> names = new ArrayList<>(params.length);
+
+        for (final String param : params) {
+            names.add(param.toLowerCase(Locale.ROOT));
+        }
+
+        this.sourceExpiryParams.put(source, List.copyOf(names));
+    }
+
+    @Nullable
+    public String get(String source, String identifier) {
+        final String key = key(source, identifier);
+        final long now = System.currentTimeMillis();
+
+        synchronized (this.entries) {
+            final CachedUrl entry = this.entries.get(key);
+
+            if (entry != null) {
+                if (entry.expiresAt > now) {
+                    this.hits.increment();
+                    return entry.url;
+                }
+
+                this.entries.remove(key);
+            }
+        }
+
+        this.misses.increment();
+        return null;
+    }
+
+    public void put(String source, String identifier, @Nullable String url) {
+        if (url == null) {
+            return;
+        }
+
+        this.put(source, identifier, url, this.getExpiresAt(source, url));
+    }
+
+    /**
+     * Stores a url that is known to expire at the given time, eg a url that was stored in an encoded track
+     *
+     * @param source The name of the source
+     * @param identifier The identifier of the track
+     * @param url The playback url
+     * @param expiresAt When the cache should stop handing out the url as unix timestamp in milliseconds
+     */
+    public void put(String source, String identifier, String url, long expiresAt) {
+        if (expiresAt <= System.currentTimeMillis()) {
+            return;
+        }
+
+        synchronized (this.entries) {
+            this.entries.put(key(source, identifier), new CachedUrl(url, expiresAt));
+        }
+    }
+
+    /**
+     * @param source The name of the source
+     * @param url The playback url
+     *
+     * @return When the url should no longer be used, from the url itself or from the ttl of the source
+     */
+    public long getExpiresAt(String source, String url) {
+        final long expiry = extractExpiry(url, this.sourceExpiryParams.getOrDefault(source, List.of()));
+
+        if (expiry == -1L) {
+            return System.currentTimeMillis() + this.sourceTtls.getOrDefault(source, DEFAULT_TTL);
+        }
+
+        return expiry - EXPIRY_MARGIN;
+    }
+
+    /**
+     * Looks up a url without counting it as a hit or miss, used when encoding tracks
+     *
+     * @param source The name of the source
+     * @param identifier The identifier of the track
+     *
+     * @return The url and when it expires, or null if it is not cached
+     */
+    @Nullable
+    public Pair<String, Long> peek(String source, String identifier) {
+        synchronized (this.entries) {
+            final CachedUrl entry = this.entries.get(key(source, identifier));
+
+            if (entry == null || entry.expiresAt <= System.currentTimeMillis()) {
+                return null;
+            }
+
+            return new Pair<>(entry.url, entry.expiresAt);
+        }
+    }
+
+    /**
+     * Gets the url from the cache or loads and caches it when it is not present
+     *
+     * @param source The name of the source
+     * @param identifier The identifier of the track
+     * @param loader Loads the url when it is not in the cache
+     *
+     * @return The playback url
+     *
+     * @throws IOException When the loader fails
+     */
+    public String getOrLoad(String source, String identifier, UrlLoader loader) throws IOException {
+        final String cached = this.get(source, identifier);
+
+        if (cached != null) {
+            return cached;
+        }
+
+        final String url = loader.load();
+
+        this.put(source, identifier, url);
+
+        return url;
+    }
+
+    /**
+     * Removes a url, use this when the url turned out to be invalid
+     *
+     * @param source The name of the source
+     * @param identifier The identifier of the track
+     *
+     * @return true if there was a url in the cache
+     */
+    public boolean invalidate(String source, String identifier) {
+        synchronized (this.entries) {
+            return this.entries.remove(key(source, identifier)) != null;
+        }
+    }
+
+    public void clear() {
+        synchronized (this.entries) {
+            this.entries.clear();
+        }
+    }
+
+    public int size() {
+        synchronized (this.entries) {
+            return this.entries.size();
+        }
+    }
+
+    public long getHits() {
+        return this.hits.sum();
+    }
+
+    public long getMisses() {
+        return this.misses.sum();
+    }
+
+    private static String key(String source, String identifier) {
+        return source + ':' + identifier;
+    }
+
+    /**
+     * Looks for the expiry time that CDNs put in signed urls, eg {@code expire=1690000000} or {@code validto=1690000000}
+     *
+     * @param url The url to look at
+     * @param sourceParams The parameters that only the source of the url uses for the expiry time
+     *
+     * @return The expiry time as unix timestamp in milliseconds, or -1 if the url has no expiry time
+     */
+    static long extractExpiry(String url, List<String> sourceParams) {
+        final int queryStart = url.indexOf('?');
+
+        if (queryStart == -1) {
+            return -1L;
+        }
+
+        for (final String param : url.substring(queryStart + 1).split("&")) {
+            final int equals = param.indexOf('=');
+
+            if (equals == -1) {
+                continue;
+            }
+
+            final String name = param.substring(0, equals).toLowerCase(Locale.ROOT);
+            final String value = param.substring(equals + 1);
+
+            if (EXPIRY_PARAMS.contains(name) || sourceParams.contains(name)) {
+                final long expiry = parseTimestamp(value);
+
+                if (expiry != -1L) {
+                    return expiry;
+                }
+            }
+
+            // akamai style tokens, hdnts=st=1690000000~exp=1690003600~acl=...
+            final int tokenExpiry = value.indexOf("exp=");
+
+            if (tokenExpiry != -1 && (tokenExpiry == 0 || value.charAt(tokenExpiry - 1) == '~')) {
+                final int end = value.indexOf('~', tokenExpiry);
+                final long expiry = parseTimestamp(value.substring(tokenExpiry + 4, end == -1 ? value.length() : end));
+
+                if (expiry != -1L) {
+                    return expiry;
+                }
+            }
+        }
+
+        return -1L;
+    }
+
+    private static long parseTimestamp(String value) {
+        // seconds have 10 digits until the year 2286, milliseconds have 13
+        if (value.length() != 10 && value.length() != 13) {
+            return -1L;
+        }
+
+        try {
+            final long timestamp = Long.parseLong(value);
+
+            return value.length() == 10 ? timestamp * 1000L : timestamp;
+        } catch (NumberFormatException ignored) {
+            return -1L;
+        }
+    }
+
+    @FunctionalInterface
+    public interface UrlLoader {
+        String load() throws IOException;
+    }
+
+    private static final class CachedUrl {
+        private final String url;
+        private final long expiresAt;
+
+        private CachedUrl(String url, long expiresAt) {
+            this.url = url;
+            this.expiresAt = expiresAt;
+        }
+    }
+}
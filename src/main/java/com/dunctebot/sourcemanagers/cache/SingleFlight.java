@@ -0,0 +1,108 @@
+/*
+ * Copyright 2026 Duncan "duncte123" Sterken
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package com.dunctebot.sourcemanagers.cache;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+import java.util.function.UnaryOperator;
+
+/**
+ * Collapses concurrent loads for the same key into a single call of the loader.
+ *
+ * The first caller for a key runs the loader on its own thread, everyone that asks for the same key while that
+ * load is running waits for it and gets the same result (or exception). Nothing is kept once the load finishes,
+ * the next call for the key will run the loader again.
+ *
+ * @param <K> The type of the key
+ * @param <V> The type of the loaded value
+ */
+public class SingleFlight<K, V> {
+    private final ConcurrentMap<K, CompletableFuture<V>> inFlight = new ConcurrentHashMap<>();
+    private final UnaryOperator<V> shareFunction;
+    private final LongAdder coalesced = new LongAdder();
+
+    /**
+     * @param shareFunction Applied to the result before it is handed to a waiting caller,
+     *                      use this to copy values that can't be shared between callers
+     */
+    public SingleFlight(UnaryOperator<V> shareFunction) {
+        this.shareFunction = shareFunction;
+    }
+
+    public V load(K key, Supplier<V> loader) {
+        final CompletableFuture<V> ownFlight = new CompletableFuture<>();
+        final CompletableFuture<V> existingFlight = this.inFlight.putIfAbsent(key, ownFlight);
+
+        if (existingFlight != null) {
+            this.coalesced.increment();
+            return this.await(existingFlight);
+        }
+
+        try {
+            final V value = loader.get();
+
+            ownFlight.complete(value);
+
+            return value;
+        } catch (Throwable t) {
+            ownFlight.completeExceptionally(t);
+            throw t;
+        } finally {
+            this.inFlight.remove(key, ownFlight);
+        }
+    }
+
+    private V await(CompletableFuture<V> flight) {
+        final V value;
+
+        try {
+            value = flight.join();
+        } catch (CompletionException e) {
+            final Throwable cause = e.getCause();
+
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+
+            if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+
+            throw e;
+        }
+
+        return value == null ? null : this.shareFunction.apply(value);
+    }
+
+    /**
+     * @return The amount of loads that are currently running
+     */
+    public int getInFlightCount() {
+        return this.inFlight.size();
+    }
+
+    /**
+     * @return How many callers got their value from a load that another caller started
+     */
+    public long getCoalescedCount() {
+        return this.coalesced.sum();
+    }
+}
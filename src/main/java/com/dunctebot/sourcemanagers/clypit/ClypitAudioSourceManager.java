@@ -55,25 +55,28 @@ public class ClypitAudioSourceManager extends AbstractDuncteBotHttpSource {
             return null;
         }
 
-        try {
-            final String clypitId = m.group(m.groupCount());
-            final JsonBrowser json = fetchJson(clypitId);
+        final String clypitId = m.group(m.groupCount());
 
-            if (json == null) {
-                return AudioReference.NO_TRACK;
-            }
+        return this.fetchItem(clypitId, () -> {
+            try {
+                final JsonBrowser json = fetchJson(clypitId);
 
-            final IdentifiedAudioReference ref = new IdentifiedAudioReference(
-                json.get("Mp3Url").safeText(),
-                reference.identifier,
-                json.get("Title").safeText()
-            );
+                if (json == null) {
+                    return AudioReference.NO_TRACK;
+                }
 
-            return new ClypitAudioTrack(AudioTrackInfoBuilder.create(ref, null).build(), this);
-        }
-        catch (Exception e) {
-            throw ExceptionTools.wrapUnfriendlyExceptions("Something went wrong", FriendlyException.Severity.SUSPICIOUS, e);
-        }
+                final IdentifiedAudioReference ref = new IdentifiedAudioReference(
+                    json.get("Mp3Url").safeText(),
+                    reference.identifier,
+                    json.get("Title").safeText()
+                );
+
+                return new ClypitAudioTrack(AudioTrackInfoBuilder.create(ref, null).build(), this);
+            }
+            catch (Exception e) {
+                throw ExceptionTools.wrapUnfriendlyExceptions("Something went wrong", FriendlyException.Severity.SUSPICIOUS, e);
+            }
+        });
     }
 
     // Switched from WebUtils to lavaplayer's stuff because that is better I guess
@@ -0,0 +1,163 @@
+/*
+ * Copyright 2026 Duncan "duncte123" Sterken
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package com.dunctebot.sourcemanagers.io;
+
+import com.dunctebot.sourcemanagers.metrics.SourceMetrics;
+import org.apache.commons.io.input.CountingInputStream;
+import org.apache.http.HttpEntity;
+import org.apache.http.HttpHeaders;
+import org.apache.http.HttpRequestInterceptor;
+import org.apache.http.HttpResponseInterceptor;
+import org.apache.http.client.entity.DecompressingEntity;
+import org.apache.http.client.entity.DeflateInputStreamFactory;
+import org.apache.http.client.entity.GZIPInputStreamFactory;
+import org.apache.http.client.entity.InputStreamFactory;
+import org.apache.http.protocol.HttpContext;
+import org.brotli.dec.BrotliInputStream;
+
+import java.io.InputStream;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.function.Supplier;
+
+/**
+ * Content decoding for the clients of {@link HttpClientPools}.
+ *
+ * The client advertises gzip, deflate and brotli for every request and decodes the body while it is being read, so
+ * parsers that stop reading early never download or decode the rest. Media streams are marked with
+ * {@link #MEDIA_REQUEST} and always ask for the identity encoding, audio does not compress and range requests on
+ * compressed bodies don't work. The sizes are recorded in the metrics from the {@link #METRICS} attribute, the client
+ * is shared by a whole host group so it can't know which source made the request.
+ */
+public final class ContentDecoders {
+    /**
+     * Set this context attribute to {@code true} while opening a media stream
+     */
+    public static final String MEDIA_REQUEST = "dunctebot.media-request";
+    /**
+     * Set this context attribute to the {@link SourceMetrics} that decoded bodies are recorded in
+     */
+    public static final String METRICS = "dunctebot.source-metrics";
+
+    private static final Map<String, InputStreamFactory> DECODERS = new LinkedHashMap<>();
+
+    static {
+        DECODERS.put("gzip", GZIPInputStreamFactory.getInstance());
+        DECODERS.put("x-gzip", GZIPInputStreamFactory.getInstance());
+        DECODERS.put("deflate", DeflateInputStreamFactory.getInstance());
+        DECODERS.put("br", BrotliInputStream::new);
+    }
+
+    /**
+     * Advertises the encodings that {@link #decoding(Supplier)} can decode
+     */
+    static final HttpRequestInterceptor ACCEPT_ENCODING = (request, context) -> {
+        if (!request.containsHeader(HttpHeaders.ACCEPT_ENCODING)) {
+            request.addHeader(HttpHeaders.ACCEPT_ENCODING, "gzip, deflate, br");
+        }
+    };
+
+    /**
+     * Forces the identity encoding for requests that are marked as media requests, this has to run after
+     * {@link #ACCEPT_ENCODING}
+     */
+    static final HttpRequestInterceptor MEDIA_IDENTITY = (request, context) -> {
+        if (Boolean.TRUE.equals(context.getAttribute(MEDIA_REQUEST))) {
+            request.setHeader(HttpHeaders.ACCEPT_ENCODING, "identity");
+        }
+    };
+
+    private ContentDecoders() {
+    }
+
+    /**
+     * Replaces the content compression of the client, which has no access to the context of the request
+     *
+     * @param fallback The metrics to record in when the context has no {@link #METRICS} attribute
+     *
+     * @return An interceptor that decodes the body of every compressed response while it is being read
+     */
+    static HttpResponseInterceptor decoding(Supplier<SourceMetrics> fallback) {
+        return (response, context) -> {
+            final HttpEntity entity = response.getEntity();
+
+            if (entity == null || entity.getContentLength() == 0L || entity.getContentEncoding() == null) {
+                return;
+            }
+
+            final String encoding = entity.getContentEncoding().getValue().trim().toLowerCase(Locale.ROOT);
+            final InputStreamFactory decoder = DECODERS.get(encoding);
+
+            // identity and encodings we don't know are passed on as they are
+            if (decoder == null) {
+                return;
+            }
+
+            response.setEntity(new DecompressingEntity(entity, counting(decoder, metrics(context, fallback))));
+            response.removeHeaders(HttpHeaders.CONTENT_LENGTH);
+            response.removeHeaders(HttpHeaders.CONTENT_ENCODING);
+            response.removeHeaders("Content-MD5");
+        };
+    }
+
+    private static Supplier<SourceMetrics> metrics(HttpContext context, Supplier<SourceMetrics> fallback) {
+        final Object metrics = context.getAttribute(METRICS);
+
+        return metrics instanceof SourceMetrics ? () -> (SourceMetrics) metrics : fallback;
+    }
+
+    private static InputStreamFactory counting(InputStreamFactory decoder, Supplier<SourceMetrics> metrics) {
+        return (raw) -> {
+            final CountingInputStream compressed = new CountingInputStream(raw);
+
+            return new DecodedInputStream(decoder.create(compressed), compressed, metrics.get());
+        };
+    }
+
+    /**
+     * Records the sizes as the body is read, the stream might never be read to the end or closed
+     */
+    private static class DecodedInputStream extends CountingInputStream {
+        private final CountingInputStream compressed;
+        private final SourceMetrics metrics;
+        private long recordedCompressed = 0L;
+        private long recordedDecompressed = 0L;
+
+        private DecodedInputStream(InputStream decoded, CountingInputStream compressed, SourceMetrics metrics) {
+            super(decoded);
+            this.compressed = compressed;
+            this.metrics = metrics;
+        }
+
+        @Override
+        protected synchronized void afterRead(int n) {
+            super.afterRead(n);
+
+            final long compressedCount = this.compressed.getByteCount();
+            final long decompressedCount = this.getByteCount();
+
+            this.metrics.recordCompressedBytes(
+                compressedCount - this.recordedCompressed,
+                decompressedCount - this.recordedDecompressed
+            );
+
+            this.recordedCompressed = compressedCount;
+            this.recordedDecompressed = decompressedCount;
+        }
+    }
+}
@@ -0,0 +1,232 @@
+/*
+ * Copyright 2026 Duncan "duncte123" Sterken
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package com.dunctebot.sourcemanagers.io;
+
+import org.apache.http.Header;
+import org.apache.http.HttpVersion;
+import org.apache.http.client.methods.CloseableHttpResponse;
+import org.apache.http.entity.AbstractHttpEntity;
+import org.apache.http.entity.ByteArrayEntity;
+import org.apache.http.entity.FileEntity;
+import org.apache.http.message.BasicHttpResponse;
+import org.apache.http.message.BasicStatusLine;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Writer;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+
+/**
+ * A recorded request/response pair.
+ *
+ * Every fixture is stored as two files, {@code <key>.meta} holds the request line, the request headers, the status,
+ * the redirects that were followed and the response headers as plain text and {@code <key>.body} holds the body.
+ * Credentials in the headers are redacted from the meta file, fixtures are meant to be committed.
+ */
+class Fixture {
+    private static final String REQUEST = "request: ";
+    private static final String REQUEST_HEADER = "request-header: ";
+    private static final String STATUS = "status: ";
+    private static final String REDIRECT = "redirect: ";
+    private static final String HEADER = "header: ";
+    private static final String REDACTED = "<redacted>";
+    private static final Set<String> REDACTED_HEADERS = Set.of("cookie", "set-cookie", "authorization");
+
+    private final String requestLine;
+    private final List<String[]> requestHeaders;
+    private final int statusCode;
+    private final String reasonPhrase;
+    private final List<URI> redirects;
+    private final List<String[]> headers;
+    private final Path body;
+
+    Fixture(String requestLine, List<String[]> requestHeaders, int statusCode, String reasonPhrase,
+            List<URI> redirects, List<String[]> headers, Path body) {
+        this.requestLine = requestLine;
+        this.requestHeaders = requestHeaders;
+        this.statusCode = statusCode;
+        this.reasonPhrase = reasonPhrase;
+        this.redirects = redirects;
+        this.headers = headers;
+        this.body = body;
+    }
+
+    List<URI> getRedirects() {
+        return this.redirects;
+    }
+
+    /**
+     * @return A new response that serves the recorded status, headers and body
+     */
+    CloseableHttpResponse toResponse() {
+        final FixtureResponse response = new FixtureResponse(this.statusCode, this.reasonPhrase);
+        final AbstractHttpEntity entity = Files.exists(this.body)
+            ? new FileEntity(this.body.toFile())
+            : new ByteArrayEntity(new byte[0]);
+
+        for (final String[] header : this.headers) {
+            response.addHeader(header[0], header[1]);
+
+            if ("Content-Type".equalsIgnoreCase(header[0])) {
+                entity.setContentType(header[1]);
+            } else if ("Content-Encoding".equalsIgnoreCase(header[0])) {
+                entity.setContentEncoding(header[1]);
+            }
+        }
+
+        response.setEntity(entity);
+
+        return response;
+    }
+
+    /**
+     * Streams a body to the file it is stored in, so large media responses never have to fit in memory.
+     *
+     * @param content The body, null if the response had none
+     *
+     * @return The file the body was written to
+     */
+    static Path writeBody(Path directory, String key, InputStream content) throws IOException {
+        Files.createDirectories(directory);
+
+        final Path file = directory.resolve(key + ".body");
+
+        if (content == null) {
+            Files.write(file, new byte[0]);
+            return file;
+        }
+
+        try (content) {
+            Files.copy(content, file, StandardCopyOption.REPLACE_EXISTING);
+        }
+
+        return file;
+    }
+
+    /**
+     * Writes the meta file, the body is written by {@link #writeBody(Path, String, InputStream)}.
+     */
+    void write(Path directory, String key) throws IOException {
+        Files.createDirectories(directory);
+
+        try (final Writer writer = Files.newBufferedWriter(directory.resolve(key + ".meta"), StandardCharsets.UTF_8)) {
+            writer.write(REQUEST + this.requestLine + '\n');
+
+            for (final String[] header : this.requestHeaders) {
+                writer.write(REQUEST_HEADER + header[0] + ": " + redact(header) + '\n');
+            }
+
+            writer.write(STATUS + this.statusCode + ' ' + this.reasonPhrase + '\n');
+
+            for (final URI redirect : this.redirects) {
+                writer.write(REDIRECT + redirect + '\n');
+            }
+
+            for (final String[] header : this.headers) {
+                writer.write(HEADER + header[0] + ": " + redact(header) + '\n');
+            }
+        }
+    }
+
+    /**
+     * @return The fixture, or null if there is no fixture with this key
+     */
+    static Fixture read(Path directory, String key) throws IOException {
+        final Path meta = directory.resolve(key + ".meta");
+
+        if (!Files.exists(meta)) {
+            return null;
+        }
+
+        String requestLine = "";
+        final List<String[]> requestHeaders = new ArrayList<>();
+        int statusCode = 200;
+        String reasonPhrase = "";
+        final List<URI> redirects = new ArrayList<>();
+        final List<String[]> headers = new ArrayList<>();
+
+        try (final BufferedReader reader = Files.newBufferedReader(meta, StandardCharsets.UTF_8)) {
+            String line;
+
+            while ((line = reader.readLine()) != null) {
+                if (line.startsWith(REQUEST_HEADER)) {
+                    requestHeaders.add(splitHeader(line.substring(REQUEST_HEADER.length())));
+                } else if (line.startsWith(REQUEST)) {
+                    requestLine = line.substring(REQUEST.length());
+                } else if (line.startsWith(STATUS)) {
+                    final String status = line.substring(STATUS.length());
+                    final int space = status.indexOf(' ');
+
+                    statusCode = Integer.parseInt(space == -1 ? status : status.substring(0, space));
+                    reasonPhrase = space == -1 ? "" : status.substring(space + 1);
+                } else if (line.startsWith(REDIRECT)) {
+                    redirects.add(URI.create(line.substring(REDIRECT.length())));
+                } else if (line.startsWith(HEADER)) {
+                    headers.add(splitHeader(line.substring(HEADER.length())));
+                }
+            }
+        }
+
+        return new Fixture(
+            requestLine, requestHeaders, statusCode, reasonPhrase, redirects, headers, directory.resolve(key + ".body")
+        );
+    }
+
+    static List<String[]> toPairs(Header[] headers) {
+        final List<String[]> pairs = new ArrayList<>(headers.length);
+
+        for (final Header header : headers) {
+            pairs.add(new String[]{ header.getName(), header.getValue() });
+        }
+
+        return pairs;
+    }
+
+    private static String redact(String[] header) {
+        return REDACTED_HEADERS.contains(header[0].toLowerCase(Locale.ROOT)) ? REDACTED : header[1];
+    }
+
+    private static String[] splitHeader(String header) {
+        final int colon = header.indexOf(": ");
+
+        if (colon == -1) {
+            return new String[]{ header, "" };
+        }
+
+        return new String[]{ header.substring(0, colon), header.substring(colon + 2) };
+    }
+
+    private static class FixtureResponse extends BasicHttpResponse implements CloseableHttpResponse {
+        private FixtureResponse(int statusCode, String reasonPhrase) {
+            super(new BasicStatusLine(HttpVersion.HTTP_1_1, statusCode, reasonPhrase));
+        }
+
+        @Override
+        public void close() {
+            // Nothing to release, the body stream is closed by whoever reads it
+        }
+    }
+}
@@ -0,0 +1,261 @@
+/*
+ * Copyright 2026 Duncan "duncte123" Sterken
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package com.dunctebot.sourcemanagers.io;
+
+import org.apache.http.HttpEntity;
+import org.apache.http.HttpEntityEnclosingRequest;
+import org.apache.http.HttpHost;
+import org.apache.http.HttpRequest;
+import org.apache.http.client.methods.CloseableHttpResponse;
+import org.apache.http.client.methods.HttpUriRequest;
+import org.apache.http.client.protocol.HttpClientContext;
+import org.apache.http.conn.ClientConnectionManager;
+import org.apache.http.conn.ClientConnectionRequest;
+import org.apache.http.conn.ManagedClientConnection;
+import org.apache.http.conn.routing.HttpRoute;
+import org.apache.http.conn.scheme.SchemeRegistry;
+import org.apache.http.entity.ByteArrayEntity;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.client.RedirectLocations;
+import org.apache.http.impl.conn.SchemeRegistryFactory;
+import org.apache.http.params.BasicHttpParams;
+import org.apache.http.params.HttpParams;
+import org.apache.http.protocol.HttpContext;
+import org.apache.http.util.EntityUtils;
+
+import javax.annotation.Nullable;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A client that records what another client does to fixtures, or serves responses from those fixtures.
+ */
+class FixtureHttpClient extends CloseableHttpClient {
+    private final FixtureHttpInterfaceManager manager;
+    @Nullable
+    private final CloseableHttpClient delegate;
+    @Nullable
+    private final Closeable onClose;
+    @SuppressWarnings("deprecation")
+    private final HttpParams params = new BasicHttpParams();
+
+    /**
+     * @param manager The manager that holds the settings
+     * @param delegate The client to record, null when replaying
+     * @param onClose Called when this client is closed
+     */
+    FixtureHttpClient(FixtureHttpInterfaceManager manager, @Nullable CloseableHttpClient delegate, @Nullable Closeable onClose) {
+        this.manager = manager;
+        this.delegate = delegate;
+        this.onClose = onClose;
+    }
+
+    @Override
+    protected CloseableHttpResponse doExecute(HttpHost target, HttpRequest request, HttpContext context) throws IOException {
+        final URI uri = requestUri(target, request);
+        final byte[] requestBody = readRequestBody(request);
+        final String method = request.getRequestLine().getMethod();
+        final Path directory = this.manager.getDirectory().resolve(uri.getHost() == null ? "unknown" : uri.getHost());
+        final String key = key(method, uri, request, requestBody);
+
+        if (this.delegate == null) {
+            return this.replay(directory, key, method, uri, context);
+        }
+
+        final Fixture fixture;
+
+        try (final CloseableHttpResponse response = this.delegate.execute(target, request, context)) {
+            final HttpEntity entity = response.getEntity();
+            final List<URI> redirects = HttpClientContext.adapt(context).getRedirectLocations();
+
+            fixture = new Fixture(
+                method + ' ' + uri,
+                Fixture.toPairs(request.getAllHeaders()),
+                response.getStatusLine().getStatusCode(),
+                response.getStatusLine().getReasonPhrase(),
+                redirects == null ? List.of() : new ArrayList<>(redirects),
+                Fixture.toPairs(response.getAllHeaders()),
+                Fixture.writeBody(directory, key, entity == null ? null : entity.getContent())
+            );
+        }
+
+        fixture.write(directory, key);
+
+        return fixture.toResponse();
+    }
+
+    private CloseableHttpResponse replay(Path directory, String key, String method, URI uri, HttpContext context) throws IOException {
+        final Fixture fixture = Fixture.read(directory, key);
+
+        if (fixture == null) {
+            throw new IOException("No fixture recorded for " + method + ' ' + uri);
+        }
+
+        final long latency = this.manager.getLatencyMillis();
+
+        if (latency > 0L) {
+            try {
+                Thread.sleep(latency);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted while replaying " + uri);
+            }
+        }
+
+        // HttpInterface#getFinalLocation reads the redirects from the context, just like after a real request
+        final RedirectLocations redirects = new RedirectLocations();
+
+        for (final URI redirect : fixture.getRedirects()) {
+            redirects.add(redirect);
+        }
+
+        context.setAttribute(HttpClientContext.REDIRECT_LOCATIONS, redirects);
+
+        return fixture.toResponse();
+    }
+
+    private static URI requestUri(HttpHost target, HttpRequest request) {
+        if (request instanceof HttpUriRequest && ((HttpUriRequest) request).getURI().isAbsolute()) {
+            return ((HttpUriRequest) request).getURI();
+        }
+
+        return URI.create(target.toURI() + request.getRequestLine().getUri());
+    }
+
+    private static byte[] readRequestBody(HttpRequest request) throws IOException {
+        if (!(request instanceof HttpEntityEnclosingRequest)) {
+            return new byte[0];
+        }
+
+        final HttpEntityEnclosingRequest enclosing = (HttpEntityEnclosingRequest) request;
+        final HttpEntity entity = enclosing.getEntity();
+
+        if (entity == null) {
+            return new byte[0];
+        }
+
+        final byte[] body = EntityUtils.toByteArray(entity);
+
+        // the body still has to be sent when recording
+        if (!entity.isRepeatable()) {
+            final ByteArrayEntity copy = new ByteArrayEntity(body);
+
+            copy.setContentType(entity.getContentType());
+            copy.setContentEncoding(entity.getContentEncoding());
+            enclosing.setEntity(copy);
+        }
+
+        return body;
+    }
+
+    // Headers like cookies and user agents change between runs, only the range changes what the response is
+    private static String key(String method, URI uri, HttpRequest request, byte[] body) {
+        try {
+            final MessageDigest digest = MessageDigest.getInstance("SHA-256");
+
+            digest.update((method + ' ' + uri).getBytes(StandardCharsets.UTF_8));
+
+            if (request.containsHeader("Range")) {
+                digest.update(request.getFirstHeader("Range").getValue().getBytes(StandardCharsets.UTF_8));
+            }
+
+            digest.update(body);
+
+            final byte[] hash = digest.digest();
+            final StringBuilder builder = new StringBuilder(method.toLowerCase(Locale.ROOT)).append('-');
+
+            for (int i = 0; i < 12; i++) {
+                builder.append(String.format("%02x", hash[i]));
+            }
+
+            return builder.toString();
+        } catch (NoSuchAlgorithmException e) {
+            // every jvm is required to have SHA-256
+            throw new IllegalStateException(e);
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (this.onClose != null) {
+            this.onClose.close();
+        }
+    }
+
+    @Override
+    @SuppressWarnings("deprecation")
+    public HttpParams getParams() {
+        return this.params;
+    }
+
+    @Override
+    @SuppressWarnings("deprecation")
+    public ClientConnectionManager getConnectionManager() {
+        // like the clients that HttpClientBuilder builds, these accessors must not fail just because we replay
+        return this.delegate == null ? ReplayConnectionManager.INSTANCE : this.delegate.getConnectionManager();
+    }
+
+    /**
+     * Replayed responses never touch the network, there are no connections to manage
+     */
+    @SuppressWarnings("deprecation")
+    private static class ReplayConnectionManager implements ClientConnectionManager {
+        private static final ReplayConnectionManager INSTANCE = new ReplayConnectionManager();
+
+        private final SchemeRegistry schemeRegistry = SchemeRegistryFactory.createDefault();
+
+        @Override
+        public SchemeRegistry getSchemeRegistry() {
+            return this.schemeRegistry;
+        }
+
+        @Override
+        public ClientConnectionRequest requestConnection(HttpRoute route, Object state) {
+            throw new IllegalStateException("Replayed requests don't use connections");
+        }
+
+        @Override
+        public void releaseConnection(ManagedClientConnection conn, long validDuration, TimeUnit timeUnit) {
+            // Nothing was handed out
+        }
+
+        @Override
+        public void closeIdleConnections(long idletime, TimeUnit timeUnit) {
+            // Nothing to close
+        }
+
+        @Override
+        public void closeExpiredConnections() {
+            // Nothing to close
+        }
+
+        @Override
+        public void shutdown() {
+            // Nothing to shut down
+        }
+    }
+}
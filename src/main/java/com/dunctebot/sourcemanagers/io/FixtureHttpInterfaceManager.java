@@ -0,0 +1,169 @@
+/*
+ * Copyright 2026 Duncan "duncte123" Sterken
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package com.dunctebot.sourcemanagers.io;
+
+import com.sedmelluq.discord.lavaplayer.tools.http.HttpContextFilter;
+import com.sedmelluq.discord.lavaplayer.tools.http.SettableHttpRequestFilter;
+import com.sedmelluq.discord.lavaplayer.tools.io.HttpInterface;
+import com.sedmelluq.discord.lavaplayer.tools.io.HttpInterfaceManager;
+import org.apache.http.client.config.RequestConfig;
+import org.apache.http.client.protocol.HttpClientContext;
+import org.apache.http.impl.client.HttpClientBuilder;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+/**
+ * An {@link HttpInterfaceManager} that records every request and response to a fixture directory, or replays those
+ * fixtures without touching the network.
+ *
+ * Redirects are recorded as the list of locations that were followed, on replay they are put back in the context so
+ * {@link HttpInterface#getFinalLocation()} works like it did when recording. The context filter of the source still
+ * runs for every request in both modes.
+ *
+ * The sources in this library use this manager when the {@code dunctebot.fixtures.mode} system property is set to
+ * {@code record} or {@code replay}, see {@link #wrapFromSystemProperties(HttpInterfaceManager)}.
+ */
+public class FixtureHttpInterfaceManager implements HttpInterfaceManager {
+    public static final String MODE_PROPERTY = "dunctebot.fixtures.mode";
+    public static final String DIRECTORY_PROPERTY = "dunctebot.fixtures.dir";
+    public static final String LATENCY_PROPERTY = "dunctebot.fixtures.latency";
+    private static final String DEFAULT_DIRECTORY = "src/test/resources/fixtures";
+
+    private final HttpInterfaceManager delegate;
+    private final Mode mode;
+    private final Path directory;
+    private final SettableHttpRequestFilter filter = new SettableHttpRequestFilter();
+    private volatile long latencyMillis = 0L;
+
+    /**
+     * @param delegate The manager that does the real requests when recording, configuration is passed on to it
+     * @param mode Whether to record or replay
+     * @param directory The directory that the fixtures are stored in
+     */
+    public FixtureHttpInterfaceManager(HttpInterfaceManager delegate, Mode mode, Path directory) {
+        this.delegate = delegate;
+        this.mode = mode;
+        this.directory = directory;
+    }
+
+    /**
+     * Wraps the manager in a fixture manager when the {@code dunctebot.fixtures.mode} system property is set.
+     * The fixtures are stored in {@code dunctebot.fixtures.dir} ({@code src/test/resources/fixtures} by default)
+     * and replayed responses are delayed by {@code dunctebot.fixtures.latency} milliseconds.
+     *
+     * @param delegate The manager to use for real requests
+     *
+     * @return The manager itself when the property is not set
+     */
+    public static HttpInterfaceManager wrapFromSystemProperties(HttpInterfaceManager delegate) {
+        final String mode = System.getProperty(MODE_PROPERTY);
+
+        if (mode == null || mode.isEmpty()) {
+            return delegate;
+        }
+
+        final FixtureHttpInterfaceManager manager = new FixtureHttpInterfaceManager(
+            delegate,
+            Mode.valueOf(mode.toUpperCase(Locale.ROOT)),
+            Paths.get(System.getProperty(DIRECTORY_PROPERTY, DEFAULT_DIRECTORY))
+        );
+
+        manager.setLatency(Long.getLong(LATENCY_PROPERTY, 0L), TimeUnit.MILLISECONDS);
+
+        return manager;
+    }
+
+    @Override
+    public HttpInterface getInterface() {
+        final HttpInterface httpInterface;
+
+        if (this.mode == Mode.RECORD) {
+            final HttpInterface real = this.delegate.getInterface();
+
+            httpInterface = new HttpInterface(
+                new FixtureHttpClient(this, real.getHttpClient(), real),
+                real.getContext(),
+                true,
+                this.filter
+            );
+        } else {
+            httpInterface = new HttpInterface(
+                new FixtureHttpClient(this, null, null),
+                HttpClientContext.create(),
+                true,
+                this.filter
+            );
+        }
+
+        httpInterface.acquire();
+
+        return httpInterface;
+    }
+
+    /**
+     * Delays every replayed response, useful to see how code behaves with a slow upstream
+     *
+     * @param latency The delay
+     * @param unit The unit of the delay
+     */
+    public void setLatency(long latency, TimeUnit unit) {
+        this.latencyMillis = unit.toMillis(latency);
+    }
+
+    long getLatencyMillis() {
+        return this.latencyMillis;
+    }
+
+    Path getDirectory() {
+        return this.directory;
+    }
+
+    public Mode getMode() {
+        return this.mode;
+    }
+
+    @Override
+    public void setHttpContextFilter(HttpContextFilter filter) {
+        this.filter.set(filter);
+    }
+
+    @Override
+    public void configureRequests(Function<RequestConfig, RequestConfig> configurator) {
+        this.delegate.configureRequests(configurator);
+    }
+
+    @Override
+    public void configureBuilder(Consumer<HttpClientBuilder> configurator) {
+        this.delegate.configureBuilder(configurator);
+    }
+
+    @Override
+    public void close() throws IOException {
+        this.delegate.close();
+    }
+
+    public enum Mode {
+        RECORD,
+        REPLAY
+    }
+}
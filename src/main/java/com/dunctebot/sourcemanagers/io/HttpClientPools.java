@@ -0,0 +1,257 @@
+/*
+ * Copyright 2026 Duncan "duncte123" Sterken
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package com.dunctebot.sourcemanagers.io;
+
+import com.dunctebot.sourcemanagers.metrics.SourceMetricsRegistry;
+import com.sedmelluq.discord.lavaplayer.tools.ExceptionTools;
+import com.sedmelluq.discord.lavaplayer.tools.http.ExtendedHttpClientBuilder;
+import com.sedmelluq.discord.lavaplayer.tools.io.HttpClientTools;
+import com.sedmelluq.discord.lavaplayer.tools.io.HttpInterfaceManager;
+import org.apache.http.HttpHost;
+import org.apache.http.conn.routing.HttpRoute;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.client.HttpClientBuilder;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
+import org.apache.http.pool.PoolStats;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * Hands out http interface managers that all share a single bounded connection pool.
+ *
+ * Managers are created for a host group, eg {@code tiktok}. Managers in the same group share one http client, so a
+ * call to {@code configureBuilder} applies to the whole group. Context filters and request configs stay per manager,
+ * which keeps the cookie handling of every source separate. Interfaces are not kept per thread, every interface gets
+ * a fresh context on top of the shared client, so the memory use does not grow with the amount of threads.
+ *
+ * The pool is built once with the connection settings of this registry, socket and SSL settings that are changed
+ * with {@code configureBuilder} are not used since the groups don't own their connections.
+ */
+public class HttpClientPools {
+    private static final HttpClientPools DEFAULT = new HttpClientPools(512, 64);
+
+    private final int maxTotal;
+    private final int maxPerHost;
+    private final Map<String, Group> groups = new ConcurrentHashMap<>();
+    private PoolingHttpClientConnectionManager pool;
+
+    /**
+     * @param maxTotal The maximum amount of open connections for all groups combined
+     * @param maxPerHost The maximum amount of open connections to a single host
+     */
+    public HttpClientPools(int maxTotal, int maxPerHost) {
+        this(maxTotal, maxPerHost, (builder) -> {});
+    }
+
+    /**
+     * @param maxTotal The maximum amount of open connections for all groups combined
+     * @param maxPerHost The maximum amount of open connections to a single host
+     * @param connections Configures how connections are made, eg {@code setSslContextOverride}, for every group
+     */
+    public HttpClientPools(int maxTotal, int maxPerHost, Consumer<ExtendedHttpClientBuilder> connections) {
+        this.maxTotal = maxTotal;
+        this.maxPerHost = maxPerHost;
+        this.pool = this.createPool(connections);
+    }
+
+    /**
+     * @return The pools that all source managers use unless they are given their own http interface manager
+     */
+    public static HttpClientPools getDefault() {
+        return DEFAULT;
+    }
+
+    /**
+     * @param group The host group that the manager makes requests to
+     *
+     * @return A new manager that uses the shared client of the group
+     */
+    public HttpInterfaceManager createManager(String group) {
+        return this.createManager(group, (builder) -> {});
+    }
+
+    /**
+     * @param group The host group that the manager makes requests to
+     * @param setup Configures the client of the group, this only runs when the group is created so interceptors that
+     *              every manager of the group needs are added once
+     *
+     * @return A new manager that uses the shared client of the group
+     */
+    public HttpInterfaceManager createManager(String group, Consumer<HttpClientBuilder> setup) {
+        return new PooledHttpInterfaceManager(this.groups.computeIfAbsent(group, (name) -> {
+            final Group created = new Group(name);
+
+            setup.accept(created.builder);
+
+            return created;
+        }));
+    }
+
+    /**
+     * Overrides the connection limit for a single host
+     *
+     * @param host The host name, eg {@code v16-webapp.tiktok.com}
+     * @param max The maximum amount of open connections to this host
+     */
+    public void setMaxPerHost(String host, int max) {
+        final PoolingHttpClientConnectionManager pool = this.getPool();
+
+        pool.setMaxPerRoute(new HttpRoute(new HttpHost(host, 443, "https"), null, true), max);
+        pool.setMaxPerRoute(new HttpRoute(new HttpHost(host, 80, "http")), max);
+    }
+
+    /**
+     * @return The occupancy of the whole pool, or null when the pools were shut down
+     */
+    public synchronized PoolStats getTotalStats() {
+        return this.pool == null ? null : this.pool.getTotalStats();
+    }
+
+    /**
+     * @return The occupancy per host that the pool has connections for
+     */
+    public synchronized Map<String, PoolStats> getHostStats() {
+        final Map<String, PoolStats> stats = new HashMap<>();
+
+        if (this.pool == null) {
+            return stats;
+        }
+
+        for (final HttpRoute route : this.pool.getRoutes()) {
+            final PoolStats routeStats = this.pool.getStats(route);
+            final String host = route.getTargetHost().toHostString();
+
+            // http and https routes to the same host are counted together
+            stats.merge(host, routeStats, (a, b) -> new PoolStats(
+                a.getLeased() + b.getLeased(),
+                a.getPending() + b.getPending(),
+                a.getAvailable() + b.getAvailable(),
+                a.getMax() + b.getMax()
+            ));
+        }
+
+        return stats;
+    }
+
+    /**
+     * @return The names of all groups that managers were created for
+     */
+    public Set<String> getGroups() {
+        return Set.copyOf(this.groups.keySet());
+    }
+
+    /**
+     * Closes the clients of all groups and the connection pool, managers from this registry can't be used after this
+     */
+    public synchronized void shutdown() {
+        for (final Group group : this.groups.values()) {
+            group.close();
+        }
+
+        this.groups.clear();
+
+        if (this.pool != null) {
+            this.pool.shutdown();
+            this.pool = null;
+        }
+    }
+
+    private PoolingHttpClientConnectionManager createPool(Consumer<ExtendedHttpClientBuilder> connections) {
+        final ExtendedHttpClientBuilder builder = new ExtendedHttpClientBuilder();
+        final PoolingHttpClientConnectionManager[] created = new PoolingHttpClientConnectionManager[1];
+
+        connections.accept(builder);
+        // lavaplayer only hands out its connection operator and factory while building a client
+        builder.setConnectionManagerFactory((operator, connectionFactory) -> {
+            created[0] = new PoolingHttpClientConnectionManager(operator, connectionFactory, -1L, TimeUnit.MILLISECONDS);
+            return created[0];
+        });
+        builder.setConnectionManagerShared(true);
+        ExceptionTools.closeWithWarnings(builder.build());
+
+        created[0].setMaxTotal(this.maxTotal);
+        created[0].setDefaultMaxPerRoute(this.maxPerHost);
+
+        return created[0];
+    }
+
+    private synchronized PoolingHttpClientConnectionManager getPool() {
+        if (this.pool == null) {
+            throw new IllegalStateException("These pools were shut down");
+        }
+
+        return this.pool;
+    }
+
+    /**
+     * The http client that is shared by the managers of a host group
+     */
+    class Group {
+        private final String name;
+        private final ExtendedHttpClientBuilder builder;
+        private CloseableHttpClient client;
+
+        private Group(String name) {
+            this.name = name;
+            this.builder = (ExtendedHttpClientBuilder) HttpClientTools.createSharedCookiesHttpBuilder();
+            // the operator and factory of this builder are ignored, the pool was built with those of the registry
+            this.builder.setConnectionManagerFactory((operator, connectionFactory) -> HttpClientPools.this.getPool());
+            // the pool outlives the clients of the groups, closing a client must not close it
+            this.builder.setConnectionManagerShared(true);
+            // decoded by our own interceptor, so the sizes end up in the metrics of the source that made the request
+            this.builder.disableContentCompression();
+            this.builder.addInterceptorLast(ContentDecoders.ACCEPT_ENCODING);
+            this.builder.addInterceptorLast(ContentDecoders.MEDIA_IDENTITY);
+            this.builder.addInterceptorLast(
+                ContentDecoders.decoding(() -> SourceMetricsRegistry.getDefault().forSource(name))
+            );
+        }
+
+        String getName() {
+            return this.name;
+        }
+
+        synchronized CloseableHttpClient getClient() {
+            if (this.client == null) {
+                this.client = this.builder.build();
+            }
+
+            return this.client;
+        }
+
+        /**
+         * Changes the builder, the client is rebuilt for the next interface. Requests that are running keep
+         * using their connections since those are owned by the shared pool.
+         */
+        synchronized void configureBuilder(Consumer<HttpClientBuilder> configurator) {
+            configurator.accept(this.builder);
+            this.close();
+        }
+
+        synchronized void close() {
+            if (this.client != null) {
+                ExceptionTools.closeWithWarnings(this.client);
+                this.client = null;
+            }
+        }
+    }
+}
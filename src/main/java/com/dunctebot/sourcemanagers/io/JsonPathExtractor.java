@@ -0,0 +1,148 @@
+/*
+ * Copyright 2026 Duncan "duncte123" Sterken
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+
+package com.dunctebot.sourcemanagers.io;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.sedmelluq.discord.lavaplayer.tools.JsonBrowser;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Reads only a few paths out of a large json document.
+ *
+ * The document is streamed, objects that are not on one of the paths are skipped without building anything for them.
+ * The result has the same shape as the document but only contains the selected values, so code that was written
+ * for {@link JsonBrowser#parse(String)} keeps working on it. A {@code *} in a path matches any key of an object,
+ * arrays can only be at the end of a path.
+ *
+ * Instances are immutable and can be shared between threads.
+ */
+public class JsonPathExtractor {
+    private static final JsonFactory FACTORY = new JsonFactory();
+
+    private final String[][] paths;
+
+    private JsonPathExtractor(String[][] paths) {
+        this.paths = paths;
+    }
+
+    /**
+     * @param paths The paths to extract, eg {@code ItemModule.*.video}
+     *
+     * @return An extractor for the paths
+     */
+    public static JsonPathExtractor of(String... paths) {
+        final String[][] split = new String[paths.length][];
+
+        for (int i = 0; i < paths.length; i++) {
+            split[i] = paths[i].split("\\.");
+        }
+
+        return new JsonPathExtractor(split);
+    }
+
+    /**
+     * @param json The json document, this must be an object
+     *
+     * @return An object with the values that were found
+     *
+     * @throws IOException When the json is malformed
+     */
+    public JsonBrowser extract(String json) throws IOException {
+        final JsonBrowser result = JsonBrowser.newMap();
+
+        try (final JsonParser parser = FACTORY.createParser(json)) {
+            if (parser.nextToken() != JsonToken.START_OBJECT) {
+                throw new IOException("Expected a json object");
+            }
+
+            this.readObject(parser, json, this.paths, 0, result);
+        }
+
+        return result;
+    }
+
+    private void readObject(JsonParser parser, String json, String[][] candidates, int depth, JsonBrowser target) throws IOException {
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            final String name = parser.getCurrentName();
+            final JsonToken value = parser.nextToken();
+            List<String[]> matching = null;
+            boolean complete = false;
+
+            for (final String[] path : candidates) {
+                final String segment = path[depth];
+
+                if (segment.equals(name) || "*".equals(segment)) {
+                    if (matching == null) {
+                        matching = new ArrayList<>(candidates.length);
+                    }
+
+                    matching.add(path);
+                    complete |= path.length == depth + 1;
+                }
+            }
+
+            if (complete) {
+                this.readValue(parser, json, value, name, target);
+            } else if (matching != null && value == JsonToken.START_OBJECT) {
+                final JsonBrowser child = JsonBrowser.newMap();
+
+                this.readObject(parser, json, matching.toArray(new String[0][]), depth + 1, child);
+
+                if (!child.values().isEmpty()) {
+                    target.put(name, child);
+                }
+            } else {
+                parser.skipChildren();
+            }
+        }
+    }
+
+    private void readValue(JsonParser parser, String json, JsonToken value, String name, JsonBrowser target) throws IOException {
+        switch (value) {
+            case START_OBJECT:
+            case START_ARRAY:
+                // the input is a string, so the offsets are in chars and the value can be cut out of it
+                final int start = (int) parser.getTokenLocation().getCharOffset();
+
+                parser.skipChildren();
+                target.put(name, JsonBrowser.parse(json.substring(start, (int) parser.getCurrentLocation().getCharOffset())));
+                break;
+            case VALUE_STRING:
+                target.put(name, parser.getText());
+                break;
+            case VALUE_NUMBER_INT:
+                target.put(name, parser.getLongValue());
+                break;
+            case VALUE_NUMBER_FLOAT:
+                target.put(name, parser.getDoubleValue());
+                break;
+            case VALUE_TRUE:
+            case VALUE_FALSE:
+                target.put(name, parser.getBooleanValue());
+                break;
+            default:
+                // null, the value is just as absent as it would be in the full document
+                break;
+        }
+    }
+}
@@ -0,0 +1,298 @@
+/*
+ * Copyright 2026 Duncan "duncte123" Sterken
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package com.dunctebot.sourcemanagers.io;
+
+import org.apache.http.HttpEntity;
+import org.apache.http.HttpResponse;
+import org.apache.http.client.methods.HttpUriRequest;
+import org.apache.http.entity.ContentType;
+
+import javax.annotation.Nullable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Pattern;
+
+/**
+ * Pulls pieces of text out of a page while it is being downloaded.
+ *
+ * Every piece is described by a start and an end marker, the captured text includes both markers so the regexes
+ * that were written for the full page keep working on the captured text. Reading stops as soon as everything that
+ * we need has been captured, the rest of the page is never downloaded.
+ *
+ * Instances are immutable and can be shared between threads.
+ */
+public class MarkerExtractor {
+    private static final int BUFFER_SIZE = 8192;
+    // nothing we scrape comes close to this, if it does the end marker is missing
+    private static final int MAX_CAPTURE_LENGTH = 16 * 1024 * 1024;
+
+    private final List<Marker> markers;
+    private final boolean stopAtFirst;
+
+    private MarkerExtractor(List<Marker> markers, boolean stopAtFirst) {
+        this.markers = markers;
+        this.stopAtFirst = stopAtFirst;
+    }
+
+    /**
+     * @return An extractor that keeps reading until every marker has been captured
+     */
+    public static MarkerExtractor allOf() {
+        return new MarkerExtractor(List.of(), false);
+    }
+
+    /**
+     * @return An extractor that stops reading once one of the markers has been captured
+     */
+    public static MarkerExtractor anyOf() {
+        return new MarkerExtractor(List.of(), true);
+    }
+
+    /**
+     * @param name The name to get the captured text by
+     * @param start The text that the capture starts with
+     * @param end The text that the capture ends with
+     *
+     * @return A new extractor that also captures this marker
+     */
+    public MarkerExtractor capture(String name, String start, String end) {
+        return this.capture(name, start, end, null);
+    }
+
+    /**
+     * @param name The name to get the captured text by
+     * @param start The text that the capture starts with
+     * @param end The text that the capture ends with
+     * @param pattern The captured text must contain a match for this pattern, if it doesn't we keep looking
+     *
+     * @return A new extractor that also captures this marker
+     */
+    public MarkerExtractor capture(String name, String start, String end, @Nullable Pattern pattern) {
+        final List<Marker> markers = new ArrayList<>(this.markers);
+
+        markers.add(new Marker(name, start, end, pattern));
+
+        return new MarkerExtractor(Collections.unmodifiableList(markers), this.stopAtFirst);
+    }
+
+    /**
+     * Reads the body of the response and aborts the request when we stopped reading before the end of the body
+     *
+     * @param request The request that the response belongs to
+     * @param response The response to read the body of
+     *
+     * @return The captured text
+     *
+     * @throws IOException When reading fails
+     */
+    public Result extract(HttpUriRequest request, HttpResponse response) throws IOException {
+        final HttpEntity entity = response.getEntity();
+
+        if (entity == null) {
+            return new Result(Map.of(), true);
+        }
+
+        final Charset charset = ContentType.getLenientOrDefault(entity).getCharset();
+        // Don't close the stream, that would make the client download the rest of the body to reuse the connection
+        final Result result = this.extract(entity.getContent(), charset == null ? StandardCharsets.UTF_8 : charset);
+
+        if (!result.reachedEnd) {
+            request.abort();
+        }
+
+        return result;
+    }
+
+    /**
+     * @param stream The stream to read from, this is not closed
+     * @param charset The charset of the text in the stream
+     *
+     * @return The captured text
+     *
+     * @throws IOException When reading fails
+     */
+    public Result extract(InputStream stream, Charset charset) throws IOException {
+        final Reader reader = new InputStreamReader(stream, charset);
+        final List<MarkerState> pending = new ArrayList<>();
+        final Map<String, String> captures = new HashMap<>();
+        final char[] buffer = new char[BUFFER_SIZE];
+
+        for (final Marker marker : this.markers) {
+            pending.add(new MarkerState(marker));
+        }
+
+        int read;
+
+        while ((read = reader.read(buffer)) != -1) {
+            for (int i = 0; i < read; i++) {
+                final char c = buffer[i];
+
+                for (int m = pending.size() - 1; m >= 0; m--) {
+                    final MarkerState state = pending.get(m);
+
+                    if (state.accept(c)) {
+                        pending.remove(m);
+                        captures.put(state.marker.name, state.capture.toString());
+
+                        if (this.stopAtFirst || pending.isEmpty()) {
+                            return new Result(captures, false);
+                        }
+                    }
+                }
+            }
+        }
+
+        return new Result(captures, true);
+    }
+
+    public static final class Result {
+        private final Map<String, String> captures;
+        private final boolean reachedEnd;
+
+        private Result(Map<String, String> captures, boolean reachedEnd) {
+            this.captures = captures;
+            this.reachedEnd = reachedEnd;
+        }
+
+        /**
+         * @param name The name of the marker
+         *
+         * @return The captured text including the start and end markers, or null if it was not found
+         */
+        @Nullable
+        public String get(String name) {
+            return this.captures.get(name);
+        }
+
+        /**
+         * @return true if the whole body was read
+         */
+        public boolean reachedEnd() {
+            return this.reachedEnd;
+        }
+    }
+
+    private static final class Marker {
+        private final String name;
+        private final char[] start;
+        private final char[] end;
+        private final int[] startFailure;
+        private final int[] endFailure;
+        @Nullable
+        private final Pattern pattern;
+
+        private Marker(String name, String start, String end, @Nullable Pattern pattern) {
+            this.name = name;
+            this.pattern = pattern;
+            this.start = start.toCharArray();
+            this.end = end.toCharArray();
+            this.startFailure = failureTable(this.start);
+            this.endFailure = failureTable(this.end);
+        }
+
+        // Knuth-Morris-Pratt, so matches are found across buffer boundaries without going back in the stream
+        private static int[] failureTable(char[] pattern) {
+            final int[] table = new int[pattern.length];
+            int k = 0;
+
+            for (int i = 1; i < pattern.length; i++) {
+                while (k > 0 && pattern[i] != pattern[k]) {
+                    k = table[k - 1];
+                }
+
+                if (pattern[i] == pattern[k]) {
+                    k++;
+                }
+
+                table[i] = k;
+            }
+
+            return table;
+        }
+    }
+
+    private static final class MarkerState {
+        private final Marker marker;
+        private StringBuilder capture = null;
+        private int matched = 0;
+
+        private MarkerState(Marker marker) {
+            this.marker = marker;
+        }
+
+        /**
+         * @return true when the capture is complete
+         */
+        private boolean accept(char c) {
+            if (this.capture == null) {
+                this.matched = advance(this.marker.start, this.marker.startFailure, this.matched, c);
+
+                if (this.matched == this.marker.start.length) {
+                    this.capture = new StringBuilder().append(this.marker.start);
+                    this.matched = 0;
+                }
+
+                return false;
+            }
+
+            this.capture.append(c);
+
+            if (this.capture.length() > MAX_CAPTURE_LENGTH) {
+                // give up on this one and look for the next start marker
+                this.capture = null;
+                this.matched = 0;
+                return false;
+            }
+
+            this.matched = advance(this.marker.end, this.marker.endFailure, this.matched, c);
+
+            if (this.matched != this.marker.end.length) {
+                return false;
+            }
+
+            if (this.marker.pattern != null && !this.marker.pattern.matcher(this.capture).find()) {
+                // false start, eg the marker text showed up in a comment
+                this.capture = null;
+                this.matched = 0;
+                return false;
+            }
+
+            return true;
+        }
+
+        private static int advance(char[] pattern, int[] failure, int matched, char c) {
+            while (matched > 0 && pattern[matched] != c) {
+                matched = failure[matched - 1];
+            }
+
+            if (pattern[matched] == c) {
+                matched++;
+            }
+
+            return matched;
+        }
+    }
+}
@@ -0,0 +1,76 @@
+/*
+ * Copyright 2026 Duncan "duncte123" Sterken
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package com.dunctebot.sourcemanagers.io;
+
+import com.sedmelluq.discord.lavaplayer.tools.http.HttpContextFilter;
+import com.sedmelluq.discord.lavaplayer.tools.http.SettableHttpRequestFilter;
+import com.sedmelluq.discord.lavaplayer.tools.io.HttpClientTools;
+import com.sedmelluq.discord.lavaplayer.tools.io.HttpInterface;
+import com.sedmelluq.discord.lavaplayer.tools.io.HttpInterfaceManager;
+import org.apache.http.client.config.RequestConfig;
+import org.apache.http.client.protocol.HttpClientContext;
+import org.apache.http.impl.client.HttpClientBuilder;
+
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+/**
+ * A manager from {@link HttpClientPools}, the filter and request config belong to this manager, the client
+ * belongs to the host group.
+ */
+class PooledHttpInterfaceManager implements HttpInterfaceManager {
+    private final HttpClientPools.Group group;
+    private final SettableHttpRequestFilter filter = new SettableHttpRequestFilter();
+    private volatile RequestConfig requestConfig = HttpClientTools.DEFAULT_REQUEST_CONFIG;
+
+    PooledHttpInterfaceManager(HttpClientPools.Group group) {
+        this.group = group;
+    }
+
+    @Override
+    public HttpInterface getInterface() {
+        final HttpClientContext context = HttpClientContext.create();
+
+        context.setRequestConfig(this.requestConfig);
+
+        final HttpInterface httpInterface = new HttpInterface(this.group.getClient(), context, false, this.filter);
+
+        httpInterface.acquire();
+
+        return httpInterface;
+    }
+
+    @Override
+    public void setHttpContextFilter(HttpContextFilter filter) {
+        this.filter.set(filter);
+    }
+
+    @Override
+    public void configureRequests(Function<RequestConfig, RequestConfig> configurator) {
+        this.requestConfig = configurator.apply(this.requestConfig);
+    }
+
+    @Override
+    public void configureBuilder(Consumer<HttpClientBuilder> configurator) {
+        this.group.configureBuilder(configurator);
+    }
+
+    @Override
+    public void close() {
+        // The client and connections are shared with the group, see HttpClientPools#shutdown
+    }
+}
@@ -0,0 +1,293 @@
+/*
+ * Copyright 2026 Duncan "duncte123" Sterken
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+
+package com.dunctebot.sourcemanagers.io;
+
+import com.sedmelluq.discord.lavaplayer.tools.io.HttpClientTools;
+import com.sedmelluq.discord.lavaplayer.tools.io.HttpInterface;
+import org.apache.http.Header;
+import org.apache.http.client.config.RequestConfig;
+import org.apache.http.client.methods.CloseableHttpResponse;
+import org.apache.http.client.methods.HttpGet;
+import org.apache.http.client.methods.HttpHead;
+import org.apache.http.client.methods.HttpRequestBase;
+import org.apache.http.client.protocol.HttpClientContext;
+
+import javax.annotation.Nullable;
+import java.io.IOException;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Predicate;
+
+/**
+ * Follows short links (eg {@code v.redd.it} or {@code vm.tiktok.com}) to the url that a source can load.
+ *
+ * Sources register the hosts of their short links together with a check for their own urls, the redirects are
+ * followed one at a time with HEAD requests and we stop at the first url that the check accepts. Servers that don't
+ * support HEAD get a GET that is aborted once the headers are in, so we never download the page itself.
+ * The results are cached for the ttl, the least recently used link is dropped first.
+ */
+public class ShortLinkResolver {
+    private static final ShortLinkResolver DEFAULT = new ShortLinkResolver(4096, 1, TimeUnit.HOURS);
+    private static final int MAX_REDIRECTS = 10;
+
+    private final int maxEntries;
+    private final long ttl;
+    private final Map<String, Predicate<String>> hosts = new ConcurrentHashMap<>();
+    private final Map<String, CachedLink> entries;
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+
+    /**
+     * @param maxEntries The maximum amount of links to remember
+     * @param ttl How long a resolved link is remembered
+     * @param unit The unit of the ttl
+     */
+    public ShortLinkResolver(int maxEntries, long ttl, TimeUnit unit) {
+        this.maxEntries = maxEntries;
+        this.ttl = unit.toMillis(ttl);
+        this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, CachedLink> eldest) {
+                return size() > ShortLinkResolver.this.maxEntries;
+            }
+        };
+    }
+
+    /**
+     * @return The resolver that is shared by all source managers unless they are given their own
+     */
+    public static ShortLinkResolver getDefault() {
+        return DEFAULT;
+    }
+
+    /**
+     * @param host The host of the short links, eg {@code v.redd.it}
+     * @param isTarget Accepts the urls that the source can load, resolving stops at the first of those
+     *
+     * @return this resolver, useful for chaining
+     */
+    public ShortLinkResolver register(String host, Predicate<String> isTarget) {
+        this.hosts.put(host.toLowerCase(Locale.ROOT), isTarget);
+        return this;
+    }
+
+    /**
+     * @param url The url to check
+     *
+     * @return true if the url is on a registered host and is not a url that the source can load already
+     */
+    public boolean isShortLink(String url) {
+        final Predicate<String> isTarget = this.getTarget(url);
+
+        return isTarget != null && !isTarget.test(url);
+    }
+
+    /**
+     * Follows the redirects of a short link, links on hosts that are not registered are followed until the end
+     *
+     * @param httpInterface The interface to send the requests with
+     * @param url The short link
+     *
+     * @return The first url that the source of the short link can load, or the last url if it never got to one
+     *
+     * @throws IOException When a request fails
+     */
+    public String resolve(HttpInterface httpInterface, String url) throws IOException {
+        final Predicate<String> isTarget = this.getTarget(url);
+
+        if (isTarget != null && isTarget.test(url)) {
+            return url;
+        }
+
+        final String cached = this.get(url);
+
+        if (cached != null) {
+            return cached;
+        }
+
+        String current = url;
+        boolean accepted = false;
+
+        for (int i = 0; i < MAX_REDIRECTS; i++) {
+            final String location = fetchLocation(httpInterface, current);
+
+            if (location == null) {
+                // without a check the end of the chain is what we were looking for
+                accepted = isTarget == null && !current.equals(url);
+                break;
+            }
+
+            current = resolveLocation(current, location);
+
+            if (isTarget != null && isTarget.test(current)) {
+                accepted = true;
+                break;
+            }
+        }
+
+        // dead links and links that never got to something the source can load might work later
+        if (accepted) {
+            this.put(url, current);
+        }
+
+        return current;
+    }
+
+    /**
+     * @return The location that the url redirects to, or null if it does not redirect
+     */
+    @Nullable
+    private static String fetchLocation(HttpInterface httpInterface, String url) throws IOException {
+        try (final CloseableHttpResponse response = execute(httpInterface, new HttpHead(url))) {
+            final int statusCode = response.getStatusLine().getStatusCode();
+
+            if (statusCode != 405 && statusCode != 501) {
+                return getLocation(statusCode, response);
+            }
+        }
+
+        // HEAD is not allowed here, all we need are the headers of a GET
+        final HttpGet httpGet = new HttpGet(url);
+
+        try (final CloseableHttpResponse response = execute(httpInterface, httpGet)) {
+            return getLocation(response.getStatusLine().getStatusCode(), response);
+        } finally {
+            httpGet.abort();
+        }
+    }
+
+    private static CloseableHttpResponse execute(HttpInterface httpInterface, HttpRequestBase request) throws IOException {
+        final RequestConfig config = httpInterface.getContext()
+            .getAttribute(HttpClientContext.REQUEST_CONFIG, RequestConfig.class);
+
+        // keep the timeouts of the source, but every redirect is a step that we look at ourselves
+        request.setConfig(
+            RequestConfig.copy(config == null ? HttpClientTools.DEFAULT_REQUEST_CONFIG : config)
+                .setRedirectsEnabled(false)
+                .build()
+        );
+
+        return httpInterface.execute(request);
+    }
+
+    @Nullable
+    private static String getLocation(int statusCode, CloseableHttpResponse response) {
+        if (statusCode < 300 || statusCode >= 400) {
+            return null;
+        }
+
+        final Header location = response.getFirstHeader("Location");
+
+        return location == null ? null : location.getValue();
+    }
+
+    private static String resolveLocation(String current, String location) throws IOException {
+        try {
+            return new URI(current).resolve(location).toString();
+        } catch (URISyntaxException | IllegalArgumentException e) {
+            throw new IOException("Invalid redirect from " + current + " to " + location, e);
+        }
+    }
+
+    @Nullable
+    private Predicate<String> getTarget(String url) {
+        try {
+            final String host = new URI(url).getHost();
+
+            return host == null ? null : this.hosts.get(host.toLowerCase(Locale.ROOT));
+        } catch (URISyntaxException e) {
+            return null;
+        }
+    }
+
+    @Nullable
+    private String get(String url) {
+        final long now = System.currentTimeMillis();
+
+        synchronized (this.entries) {
+            final CachedLink entry = this.entries.get(url);
+
+            if (entry != null) {
+                if (entry.expiresAt > now) {
+                    this.hits.increment();
+                    return entry.target;
+                }
+
+                this.entries.remove(url);
+            }
+        }
+
+        this.misses.increment();
+        return null;
+    }
+
+    private void put(String url, String target) {
+        synchronized (this.entries) {
+            this.entries.put(url, new CachedLink(target, System.currentTimeMillis() + this.ttl));
+        }
+    }
+
+    /**
+     * Forgets a link, use this when the url that it resolved to turned out to be wrong
+     *
+     * @param url The short link
+     *
+     * @return true if the link was cached
+     */
+    public boolean invalidate(String url) {
+        synchronized (this.entries) {
+            return this.entries.remove(url) != null;
+        }
+    }
+
+    public void clear() {
+        synchronized (this.entries) {
+            this.entries.clear();
+        }
+    }
+
+    public int size() {
+        synchronized (this.entries) {
+            return this.entries.size();
+        }
+    }
+
+    public long getHits() {
+        return this.hits.sum();
+    }
+
+    public long getMisses() {
+        return this.misses.sum();
+    }
+
+    private static final class CachedLink {
+        private final String target;
+        private final long expiresAt;
+
+        private CachedLink(String target, long expiresAt) {
+            this.target = target;
+            this.expiresAt = expiresAt;
+        }
+    }
+}
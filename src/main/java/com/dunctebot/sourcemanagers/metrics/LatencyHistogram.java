@@ -0,0 +1,99 @@
+/*
+ * Copyright 2026 Duncan "duncte123" Sterken
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package com.dunctebot.sourcemanagers.metrics;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A latency histogram with fixed buckets, recording is lock-free so it can be used on hot paths.
+ *
+ * Every bucket is a {@link LongAdder}, concurrent recordings are spread over cells instead of all threads fighting
+ * over a single counter. A snapshot taken while recording is going on may be off by the values that were recorded
+ * at that moment, which is fine for metrics.
+ */
+public class LatencyHistogram {
+    /**
+     * The upper bounds of the buckets in milliseconds, everything slower ends up in the overflow bucket
+     */
+    static final long[] BUCKET_BOUNDS = {
+        5L, 10L, 25L, 50L, 100L, 250L, 500L, 1000L, 2500L, 5000L, 10000L, 30000L
+    };
+
+    private final LongAdder[] buckets = new LongAdder[BUCKET_BOUNDS.length + 1];
+    private final LongAdder sumNanos = new LongAdder();
+
+    public LatencyHistogram() {
+        for (int i = 0; i < this.buckets.length; i++) {
+            this.buckets[i] = new LongAdder();
+        }
+    }
+
+    /**
+     * @param nanos How long the measured operation took in nanoseconds
+     */
+    public void record(long nanos) {
+        final long value = Math.max(0L, nanos);
+        int bucket = 0;
+
+        while (bucket < BUCKET_BOUNDS.length && value > TimeUnit.MILLISECONDS.toNanos(BUCKET_BOUNDS[bucket])) {
+            bucket++;
+        }
+
+        this.buckets[bucket].increment();
+        this.sumNanos.add(value);
+    }
+
+    /**
+     * Records the time that passed since {@code startNanos}
+     *
+     * @param startNanos The value of {@link System#nanoTime()} when the operation started
+     */
+    public void recordSince(long startNanos) {
+        this.record(System.nanoTime() - startNanos);
+    }
+
+    /**
+     * @return The amount of recordings per bucket, the last bucket holds everything above the largest bound
+     */
+    public long[] getBucketCounts() {
+        final long[] counts = new long[this.buckets.length];
+
+        for (int i = 0; i < counts.length; i++) {
+            counts[i] = this.buckets[i].sum();
+        }
+
+        return counts;
+    }
+
+    public long getCount() {
+        long count = 0L;
+
+        for (final LongAdder bucket : this.buckets) {
+            count += bucket.sum();
+        }
+
+        return count;
+    }
+
+    /**
+     * @return The sum of all recorded values in nanoseconds
+     */
+    public long getSumNanos() {
+        return this.sumNanos.sum();
+    }
+}
@@ -0,0 +1,153 @@
+/*
+ * Copyright 2026 Duncan "duncte123" Sterken
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package com.dunctebot.sourcemanagers.metrics;
+
+import com.dunctebot.sourcemanagers.io.ContentDecoders;
+import com.sedmelluq.discord.lavaplayer.tools.io.HttpInterface;
+import com.sedmelluq.discord.lavaplayer.tools.io.PersistentHttpStream;
+
+import org.apache.http.client.protocol.HttpClientContext;
+
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.net.URI;
+
+/**
+ * A {@link PersistentHttpStream} that records the time to the first byte and the amount of bytes read.
+ * The connection is opened on the first read, so the time to the first byte includes connecting.
+ * The requests of this stream are marked as media requests, so they never ask for a compressed body.
+ * Besides the metrics of the source every stream also counts its own bytes, see {@link #getBytesRead()}.
+ */
+public class MeteredHttpStream extends PersistentHttpStream {
+    private final HttpInterface httpInterface;
+    private final SourceMetrics metrics;
+    private final LatencyHistogram firstByteLatency;
+    private final long openedAt = System.nanoTime();
+    private boolean firstByteRead = false;
+    // only written by the thread that reads the stream
+    private volatile long bytesRead = 0L;
+
+    public MeteredHttpStream(HttpInterface httpInterface, URI contentUrl, Long contentLength, SourceMetrics metrics) {
+        this(httpInterface, contentUrl, contentLength, metrics, metrics.getFirstByteLatency());
+    }
+
+    /**
+     * @param firstByteLatency The histogram to record the time to the first byte in, instead of the one of the source
+     */
+    public MeteredHttpStream(HttpInterface httpInterface, URI contentUrl, Long contentLength, SourceMetrics metrics,
+                             LatencyHistogram firstByteLatency) {
+        super(httpInterface, contentUrl, contentLength);
+        this.httpInterface = httpInterface;
+        this.metrics = metrics;
+        this.firstByteLatency = firstByteLatency;
+    }
+
+    @Override
+    protected void connect(boolean skipStatusCheck) throws IOException {
+        final HttpClientContext context = this.httpInterface.getContext();
+
+        // audio does not compress and ranges on compressed bodies don't work, never ask for compression here
+        context.setAttribute(ContentDecoders.MEDIA_REQUEST, true);
+
+        try {
+            super.connect(skipStatusCheck);
+        } finally {
+            context.removeAttribute(ContentDecoders.MEDIA_REQUEST);
+        }
+    }
+
+    @Override
+    public int read() throws IOException {
+        final int result = super.read();
+
+        if (result != -1) {
+            this.recordRead(1);
+        }
+
+        return result;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        final int result = super.read(b, off, len);
+
+        if (result > 0) {
+            this.recordRead(result);
+        }
+
+        return result;
+    }
+
+    /**
+     * Reads the bytes at the current position without consuming them, connects when the stream is not connected yet
+     *
+     * @param buffer The buffer to read into
+     *
+     * @return The amount of bytes in the buffer, less than its length when the stream ended before that
+     *
+     * @throws IOException When connecting fails, the server did not respond with a success status or reading fails
+     */
+    public int peek(byte[] buffer) throws IOException {
+        if (this.currentContent == null) {
+            this.connect(false);
+        }
+
+        if (!this.currentContent.markSupported()) {
+            this.currentContent = new BufferedInputStream(this.currentContent);
+        }
+
+        this.currentContent.mark(buffer.length);
+
+        int total = 0;
+
+        try {
+            int read;
+
+            while (total < buffer.length && (read = this.currentContent.read(buffer, total, buffer.length - total)) != -1) {
+                total += read;
+            }
+        } finally {
+            this.currentContent.reset();
+        }
+
+        if (total > 0) {
+            this.recordFirstByte();
+        }
+
+        return total;
+    }
+
+    private void recordFirstByte() {
+        if (!this.firstByteRead) {
+            this.firstByteRead = true;
+            this.firstByteLatency.recordSince(this.openedAt);
+        }
+    }
+
+    private void recordRead(int bytes) {
+        this.recordFirstByte();
+        this.bytesRead += bytes;
+        this.metrics.recordBytesRead(bytes);
+    }
+
+    /**
+     * @return The amount of bytes that were read from this stream, including the bytes of reconnects
+     */
+    public long getBytesRead() {
+        return this.bytesRead;
+    }
+}
@@ -0,0 +1,152 @@
+/*
+ * Copyright 2026 Duncan "duncte123" Sterken
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package com.dunctebot.sourcemanagers.metrics;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.util.Locale;
+
+/**
+ * Writes the metrics of a {@link SourceMetricsRegistry} in the Prometheus text exposition format (version 0.0.4),
+ * serve the output with the {@code text/plain; version=0.0.4} content type.
+ */
+public class PrometheusTextWriter {
+    private static final String PREFIX = "dunctebot_source_";
+
+    private final SourceMetricsRegistry registry;
+
+    public PrometheusTextWriter(SourceMetricsRegistry registry) {
+        this.registry = registry;
+    }
+
+    public void write(Writer writer) throws IOException {
+        this.writeHistogram(writer, "load_seconds", "Time it took to load an item", Histogram.LOAD);
+        this.writeHistogram(writer, "playback_url_seconds", "Time it took to resolve a playback url", Histogram.PLAYBACK_URL);
+        this.writeHistogram(writer, "first_byte_seconds", "Time from opening a stream until the first byte", Histogram.FIRST_BYTE);
+        this.writeHistogram(
+            writer,
+            "fallback_first_byte_seconds",
+            "Time from opening a hedged fallback stream until the first byte",
+            Histogram.FALLBACK_FIRST_BYTE
+        );
+
+        writer.write("# HELP " + PREFIX + "load_outcomes_total Results of loading items\n");
+        writer.write("# TYPE " + PREFIX + "load_outcomes_total counter\n");
+
+        for (final SourceMetrics metrics : this.registry.getAll()) {
+            for (final SourceMetrics.Outcome outcome : SourceMetrics.Outcome.values()) {
+                writer.write(PREFIX + "load_outcomes_total{source=\"" + escape(metrics.getSource()) +
+                    "\",outcome=\"" + outcome.name().toLowerCase(Locale.ROOT) + "\"} " +
+                    metrics.getOutcomeCount(outcome) + '\n');
+            }
+        }
+
+        writer.write("# HELP " + PREFIX + "read_bytes_total Bytes read from audio streams\n");
+        writer.write("# TYPE " + PREFIX + "read_bytes_total counter\n");
+
+        for (final SourceMetrics metrics : this.registry.getAll()) {
+            writer.write(PREFIX + "read_bytes_total{source=\"" + escape(metrics.getSource()) + "\"} " +
+                metrics.getBytesRead() + '\n');
+        }
+
+        writer.write("# HELP " + PREFIX + "compressed_bytes_total Bytes received for compressed responses\n");
+        writer.write("# TYPE " + PREFIX + "compressed_bytes_total counter\n");
+
+        for (final SourceMetrics metrics : this.registry.getAll()) {
+            writer.write(PREFIX + "compressed_bytes_total{source=\"" + escape(metrics.getSource()) + "\"} " +
+                metrics.getCompressedBytes() + '\n');
+        }
+
+        writer.write("# HELP " + PREFIX + "decompressed_bytes_total Size of compressed responses after decompressing\n");
+        writer.write("# TYPE " + PREFIX + "decompressed_bytes_total counter\n");
+
+        for (final SourceMetrics metrics : this.registry.getAll()) {
+            writer.write(PREFIX + "decompressed_bytes_total{source=\"" + escape(metrics.getSource()) + "\"} " +
+                metrics.getDecompressedBytes() + '\n');
+        }
+
+        writer.flush();
+    }
+
+    /**
+     * @return The metrics in the Prometheus text format
+     */
+    public String writeToString() {
+        final StringWriter writer = new StringWriter();
+
+        try {
+            this.write(writer);
+        } catch (IOException e) {
+            // StringWriter does not throw
+            throw new IllegalStateException(e);
+        }
+
+        return writer.toString();
+    }
+
+    private void writeHistogram(Writer writer, String name, String help, Histogram type) throws IOException {
+        final String fullName = PREFIX + name;
+
+        writer.write("# HELP " + fullName + ' ' + help + '\n');
+        writer.write("# TYPE " + fullName + " histogram\n");
+
+        for (final SourceMetrics metrics : this.registry.getAll()) {
+            final LatencyHistogram histogram = type.get(metrics);
+            final String source = escape(metrics.getSource());
+            final long[] counts = histogram.getBucketCounts();
+            long cumulative = 0L;
+
+            for (int i = 0; i < counts.length; i++) {
+                cumulative += counts[i];
+
+                final String bound = i < LatencyHistogram.BUCKET_BOUNDS.length
+                    ? Double.toString(LatencyHistogram.BUCKET_BOUNDS[i] / 1000D)
+                    : "+Inf";
+
+                writer.write(fullName + "_bucket{source=\"" + source + "\",le=\"" + bound + "\"} " + cumulative + '\n');
+            }
+
+            writer.write(fullName + "_sum{source=\"" + source + "\"} " + (histogram.getSumNanos() / 1_000_000_000D) + '\n');
+            writer.write(fullName + "_count{source=\"" + source + "\"} " + cumulative + '\n');
+        }
+    }
+
+    private static String escape(String value) {
+        return value.replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", "\\n");
+    }
+
+    private enum Histogram {
+        LOAD,
+        PLAYBACK_URL,
+        FIRST_BYTE,
+        FALLBACK_FIRST_BYTE;
+
+        LatencyHistogram get(SourceMetrics metrics) {
+            switch (this) {
+                case LOAD:
+                    return metrics.getLoadLatency();
+                case PLAYBACK_URL:
+                    return metrics.getPlaybackUrlLatency();
+                case FIRST_BYTE:
+                    return metrics.getFirstByteLatency();
+                default:
+                    return metrics.getFallbackFirstByteLatency();
+            }
+        }
+    }
+}
@@ -0,0 +1,182 @@
+/*
+ * Copyright 2026 Duncan "duncte123" Sterken
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package com.dunctebot.sourcemanagers.metrics;
+
+import com.sedmelluq.discord.lavaplayer.tools.FriendlyException;
+import com.sedmelluq.discord.lavaplayer.track.AudioItem;
+import com.sedmelluq.discord.lavaplayer.track.AudioPlaylist;
+import com.sedmelluq.discord.lavaplayer.track.AudioReference;
+import com.sedmelluq.discord.lavaplayer.track.AudioTrack;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * The metrics of a single source.
+ */
+public class SourceMetrics {
+    private final String source;
+    private final LatencyHistogram loadLatency = new LatencyHistogram();
+    private final LatencyHistogram playbackUrlLatency = new LatencyHistogram();
+    private final LatencyHistogram firstByteLatency = new LatencyHistogram();
+    private final LatencyHistogram fallbackFirstByteLatency = new LatencyHistogram();
+    private final Map<Outcome, LongAdder> outcomes = new EnumMap<>(Outcome.class);
+    private final LongAdder bytesRead = new LongAdder();
+    private final LongAdder compressedBytes = new LongAdder();
+    private final LongAdder decompressedBytes = new LongAdder();
+
+    SourceMetrics(String source) {
+        this.source = source;
+
+        for (final Outcome outcome : Outcome.values()) {
+            this.outcomes.put(outcome, new LongAdder());
+        }
+    }
+
+    /**
+     * Records the result of a load
+     *
+     * @param item The item that was loaded
+     */
+    public void recordOutcome(AudioItem item) {
+        this.outcomes.get(Outcome.of(item)).increment();
+    }
+
+    /**
+     * Records a failed load
+     *
+     * @param exception Why the load failed
+     */
+    public void recordOutcome(FriendlyException exception) {
+        this.outcomes.get(Outcome.of(exception.severity)).increment();
+    }
+
+    /**
+     * @param bytes The amount of bytes that were read from a stream of this source
+     */
+    public void recordBytesRead(long bytes) {
+        this.bytesRead.add(bytes);
+    }
+
+    /**
+     * @param compressed The amount of bytes that came over the wire
+     * @param decompressed The amount of bytes that those decompressed to
+     */
+    public void recordCompressedBytes(long compressed, long decompressed) {
+        this.compressedBytes.add(compressed);
+        this.decompressedBytes.add(decompressed);
+    }
+
+    public String getSource() {
+        return this.source;
+    }
+
+    /**
+     * @return How long {@code loadItem} took for identifiers that belong to this source
+     */
+    public LatencyHistogram getLoadLatency() {
+        return this.loadLatency;
+    }
+
+    /**
+     * @return How long it took to resolve the playback url of a track
+     */
+    public LatencyHistogram getPlaybackUrlLatency() {
+        return this.playbackUrlLatency;
+    }
+
+    /**
+     * @return How long it took from opening the audio stream until the first byte was read
+     */
+    public LatencyHistogram getFirstByteLatency() {
+        return this.firstByteLatency;
+    }
+
+    /**
+     * @return How long it took from opening a fallback stream next to a slow stream until its first byte was read
+     */
+    public LatencyHistogram getFallbackFirstByteLatency() {
+        return this.fallbackFirstByteLatency;
+    }
+
+    public long getOutcomeCount(Outcome outcome) {
+        return this.outcomes.get(outcome).sum();
+    }
+
+    public long getBytesRead() {
+        return this.bytesRead.sum();
+    }
+
+    /**
+     * @return The amount of compressed bytes that were received for metadata requests
+     */
+    public long getCompressedBytes() {
+        return this.compressedBytes.sum();
+    }
+
+    /**
+     * @return The size of the compressed responses after decompressing them
+     */
+    public long getDecompressedBytes() {
+        return this.decompressedBytes.sum();
+    }
+
+    /**
+     * @return The amount of bytes that compression saved us from downloading
+     */
+    public long getBytesSaved() {
+        return this.getDecompressedBytes() - this.getCompressedBytes();
+    }
+
+    public enum Outcome {
+        TRACK,
+        PLAYLIST,
+        REFERENCE,
+        NO_TRACK,
+        COMMON,
+        SUSPICIOUS,
+        FAULT;
+
+        static Outcome of(AudioItem item) {
+            if (item == AudioReference.NO_TRACK || item == null) {
+                return NO_TRACK;
+            }
+
+            if (item instanceof AudioTrack) {
+                return TRACK;
+            }
+
+            if (item instanceof AudioPlaylist) {
+                return PLAYLIST;
+            }
+
+            return REFERENCE;
+        }
+
+        static Outcome of(FriendlyException.Severity severity) {
+            switch (severity) {
+                case COMMON:
+                    return COMMON;
+                case SUSPICIOUS:
+                    return SUSPICIOUS;
+                default:
+                    return FAULT;
+            }
+        }
+    }
+}
@@ -0,0 +1,67 @@
+/*
+ * Copyright 2026 Duncan "duncte123" Sterken
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package com.dunctebot.sourcemanagers.metrics;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Holds the {@link SourceMetrics} of every source, sources create their metrics on first use.
+ */
+public class SourceMetricsRegistry {
+    private static final SourceMetricsRegistry DEFAULT = new SourceMetricsRegistry();
+
+    private final Map<String, SourceMetrics> sources = new ConcurrentHashMap<>();
+
+    /**
+     * @return The registry that is used by all source managers unless they are given their own
+     */
+    public static SourceMetricsRegistry getDefault() {
+        return DEFAULT;
+    }
+
+    /**
+     * @param source The name of the source
+     *
+     * @return The metrics of the source, created if they did not exist yet
+     */
+    public SourceMetrics forSource(String source) {
+        final SourceMetrics existing = this.sources.get(source);
+
+        if (existing != null) {
+            return existing;
+        }
+
+        return this.sources.computeIfAbsent(source, SourceMetrics::new);
+    }
+
+    /**
+     * @return The metrics of all sources that recorded something, sorted by source name
+     */
+    public Collection<SourceMetrics> getAll() {
+        final List<SourceMetrics> all = new ArrayList<>(this.sources.values());
+
+        all.sort(Comparator.comparing(SourceMetrics::getSource));
+
+        return Collections.unmodifiableList(all);
+    }
+}
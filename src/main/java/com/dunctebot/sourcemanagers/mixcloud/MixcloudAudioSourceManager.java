@@ -17,6 +17,8 @@
 package com.dunctebot.sourcemanagers.mixcloud;
 
 import com.dunctebot.sourcemanagers.AbstractDuncteBotHttpSource;
+import com.dunctebot.sourcemanagers.Pair;
+import com.dunctebot.sourcemanagers.io.JsonPathExtractor;
 import com.sedmelluq.discord.lavaplayer.player.AudioPlayerManager;
 import com.sedmelluq.discord.lavaplayer.tools.ExceptionTools;
 import com.sedmelluq.discord.lavaplayer.tools.FriendlyException;
@@ -31,7 +33,9 @@ import org.apache.http.client.methods.CloseableHttpResponse;
 import org.apache.http.client.methods.HttpPost;
 import org.apache.http.entity.ContentType;
 import org.apache.http.entity.StringEntity;
+import org.apache.http.util.EntityUtils;
 
+import javax.annotation.Nullable;
 import java.io.DataInput;
 import java.io.DataOutput;
 import java.io.IOException;
@@ -43,61 +47,33 @@ import static com.dunctebot.sourcemanagers.Utils.urlDecode;
 
 public class MixcloudAudioSourceManager extends AbstractDuncteBotHttpSource {
     private static final String THUMBNAILER_BASE = "https://thumbnailer.mixcloud.com/unsafe/390x390/";
-    private static final String GRAPHQL_AUDIO_REQUEST = "query PlayerHeroQuery(\n" +
-        "    $lookup: CloudcastLookup!\n" +
-        ") {\n" +
-        "    cloudcast: cloudcastLookup(lookup: $lookup) {\n" +
-        "        id\n" +
-        "        name\n" +
-        "        picture {\n" +
-        "            isLight\n" +
-        "            primaryColor\n" +
-        "            darkPrimaryColor: primaryColor(darken: 60)\n" +
-        "            ...UGCImage_picture\n" +
-        "        }\n" +
-        "        owner {\n" +
-        "            ...AudioPageAvatar_user\n" +
-        "            id\n" +
-        "        }\n" +
-        "        restrictedReason\n" +
-        "        seekRestriction\n" +
-        "        ...PlayButton_cloudcast\n" +
-        "    }\n" +
-        "}\n" +
-        "\n" +
-        "fragment AudioPageAvatar_user on User {\n" +
-        "    displayName\n" +
-        "    username\n" +
-        "}\n" +
-        "\n" +
-        "fragment PlayButton_cloudcast on Cloudcast {\n" +
-        "    restrictedReason\n" +
-        "    owner {\n" +
-        "        displayName\n" +
-        "        country\n" +
-        "        username\n" +
-        "        isSubscribedTo\n" +
-        "        isViewer\n" +
-        "        id\n" +
-        "    }\n" +
-        "    slug\n" +
-        "    id\n" +
-        "    isDraft\n" +
-        "    isPlayable\n" +
-        "    streamInfo {\n" +
-        "        hlsUrl\n" +
-        "        dashUrl\n" +
-        "        url\n" +
-        "        uuid\n" +
-        "    }\n" +
-        "    audioLength\n" +
-        "    seekRestriction\n" +
-        "}\n" +
-        "\n" +
-        "fragment UGCImage_picture on Picture {\n" +
-        "    urlRoot\n" +
-        "    primaryColor\n" +
-        "}\n";
+    // only the fields that we read, the page query also asks for colours, avatars and subscriptions
+    private static final PersistedQuery TRACK_QUERY = new PersistedQuery(
+        "query TrackQuery($lookup: CloudcastLookup!) {" +
+            " cloudcast: cloudcastLookup(lookup: $lookup) {" +
+            " name picture { urlRoot } owner { username } restrictedReason audioLength streamInfo { url }" +
+            " }" +
+            " }"
+    );
+    private static final PersistedQuery PLAYBACK_QUERY = new PersistedQuery(
+        "query PlaybackQuery($lookup: CloudcastLookup!) {" +
+            " cloudcast: cloudcastLookup(lookup: $lookup) { restrictedReason streamInfo { url } }" +
+            " }"
+    );
+    private static final JsonPathExtractor TRACK_FIELDS = JsonPathExtractor.of(
+        "data.cloudcast.name",
+        "data.cloudcast.picture.urlRoot",
+        "data.cloudcast.owner.username",
+        "data.cloudcast.restrictedReason",
+        "data.cloudcast.audioLength",
+        "data.cloudcast.streamInfo.url",
+        "errors"
+    );
+    private static final JsonPathExtractor PLAYBACK_FIELDS = JsonPathExtractor.of(
+        "data.cloudcast.restrictedReason",
+        "data.cloudcast.streamInfo.url",
+        "errors"
+    );
     private static final Pattern URL_REGEX = Pattern.compile("https?://(?:(?:www|beta|m)\\.)?mixcloud\\.com/([^/]+)/(?!stream|uploads|favorites|listens|playlists)([^/]+)/?");
 
     @Override
@@ -113,18 +89,20 @@ public class MixcloudAudioSourceManager extends AbstractDuncteBotHttpSource {
             return null;
         }
 
-        // retry if possible
-        while (true) {
-            try {
-                return this.loadItemOnce(reference, matcher);
-            } catch (Exception e) {
-                if (!HttpClientTools.isRetriableNetworkException(e)) {
-                    throw ExceptionTools.wrapUnfriendlyExceptions(
-                        "Loading information for a MixCloud track failed.",
-                        FriendlyException.Severity.FAULT, e);
+        return this.fetchItem(matcher.group(1) + '/' + matcher.group(2), () -> {
+            // retry if possible
+            while (true) {
+                try {
+                    return this.loadItemOnce(reference, matcher);
+                } catch (Exception e) {
+                    if (!HttpClientTools.isRetriableNetworkException(e)) {
+                        throw ExceptionTools.wrapUnfriendlyExceptions(
+                            "Loading information for a MixCloud track failed.",
+                            FriendlyException.Severity.FAULT, e);
+                    }
                 }
             }
-        }
+        });
     }
 
     private AudioItem loadItemOnce(AudioReference reference, Matcher matcher) throws IOException {
@@ -166,19 +144,72 @@ public class MixcloudAudioSourceManager extends AbstractDuncteBotHttpSource {
         );
     }
 
+    /**
+     * @return The info of the track, or null if it does not exist or can't be streamed
+     */
+    @Nullable
     protected JsonBrowser extractTrackInfoGraphQl(String username, String slug) throws IOException {
-        final var body = JsonBrowser.newMap();
+        return this.executeQuery(TRACK_QUERY, TRACK_FIELDS, username, slug);
+    }
 
-        body.put("query", GRAPHQL_AUDIO_REQUEST);
+    /**
+     * @return The restriction and the stream of the track, or null if it does not exist or can't be streamed
+     */
+    @Nullable
+    protected JsonBrowser extractPlaybackInfoGraphQl(String username, String slug) throws IOException {
+        return this.executeQuery(PLAYBACK_QUERY, PLAYBACK_FIELDS, username, slug);
+    }
 
-        final var variables = JsonBrowser.newMap();
+    @Nullable
+    private JsonBrowser executeQuery(PersistedQuery query, JsonPathExtractor fields,
+                                     String username, String slug) throws IOException {
+        final JsonBrowser variables = JsonBrowser.newMap();
 
         variables.put("lookup", new MixcloudLookup(
             slug, username
         ));
 
-        body.put("variables", variables);
+        Pair<Integer, JsonBrowser> response = null;
+
+        if (query.isEnabled()) {
+            // the hash is all the server needs once it knows the query
+            response = this.post(query.createBody(variables, false), fields);
+
+            final boolean notSupported = PersistedQuery.isNotSupported(response.getRight());
+
+            if (response.getLeft() == 400 || notSupported || PersistedQuery.isNotFound(response.getRight())) {
+                query.onRejected(!notSupported && response.getLeft() != 400);
+                response = null;
+            } else if (PersistedQuery.isFailed(response.getRight())) {
+                // some other error, the full query is the only way to know if the track itself is the problem
+                response = null;
+            }
+        }
+
+        if (response == null) {
+            response = this.post(query.createBody(variables, true), fields);
+        }
+
+        final int statusCode = response.getLeft();
+
+        if (statusCode != 200) {
+            if (statusCode == 404) {
+                return null;
+            }
+
+            throw new IOException("Invalid status code for Mixcloud track page response: " + statusCode);
+        }
+
+        final JsonBrowser json = response.getRight().get("data").get("cloudcast");
+
+        if (json.get("streamInfo").isNull()) {
+            return null;
+        }
+
+        return json;
+    }
 
+    private Pair<Integer, JsonBrowser> post(JsonBrowser body, JsonPathExtractor fields) throws IOException {
         final HttpPost httpPost = new HttpPost("https://app.mixcloud.com/graphql");
 
         httpPost.setEntity(new StringEntity(body.text(), ContentType.APPLICATION_JSON));
@@ -186,22 +217,23 @@ public class MixcloudAudioSourceManager extends AbstractDuncteBotHttpSource {
         try (final CloseableHttpResponse res = getHttpInterface().execute(httpPost)) {
             final int statusCode = res.getStatusLine().getStatusCode();
 
-            if (statusCode != 200) {
-                if (statusCode == 404) {
-                    return null;
-                }
-
-                throw new IOException("Invalid status code for Mixcloud track page response: " + statusCode);
+            if (statusCode != 200 && statusCode != 400) {
+                EntityUtils.consumeQuietly(res.getEntity());
+                return Pair.of(statusCode, JsonBrowser.NULL_BROWSER);
             }
 
             final String content = IOUtils.toString(res.getEntity().getContent(), StandardCharsets.UTF_8);
-            final JsonBrowser json = JsonBrowser.parse(content).get("data").get("cloudcast");
 
-            if (json.get("streamInfo").isNull()) {
-                return null;
-            }
+            try {
+                return Pair.of(statusCode, fields.extract(content));
+            } catch (IOException e) {
+                // a 400 does not have to be json
+                if (statusCode == 400) {
+                    return Pair.of(statusCode, JsonBrowser.NULL_BROWSER);
+                }
 
-            return json;
+                throw e;
+            }
         }
     }
 
@@ -211,12 +243,12 @@ public class MixcloudAudioSourceManager extends AbstractDuncteBotHttpSource {
     }
 
     @Override
-    public void encodeTrack(AudioTrack track, DataOutput output) {
-        // nothing to encode
+    public void encodeTrack(AudioTrack track, DataOutput output) throws IOException {
+        this.encodeResolvedStream(track, output);
     }
 
     @Override
-    public AudioTrack decodeTrack(AudioTrackInfo trackInfo, DataInput input) {
-        return new MixcloudAudioTrack(trackInfo, this);
+    public AudioTrack decodeTrack(AudioTrackInfo trackInfo, DataInput input) throws IOException {
+        return this.decodeResolvedStream(new MixcloudAudioTrack(trackInfo, this), input);
     }
 }
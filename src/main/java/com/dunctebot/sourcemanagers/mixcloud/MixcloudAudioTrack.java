@@ -18,11 +18,14 @@ package com.dunctebot.sourcemanagers.mixcloud;
 
 import com.dunctebot.sourcemanagers.AbstractDuncteBotHttpSource;
 import com.dunctebot.sourcemanagers.MpegTrack;
+import com.dunctebot.sourcemanagers.ResolvedStream;
 import com.sedmelluq.discord.lavaplayer.tools.ExceptionTools;
 import com.sedmelluq.discord.lavaplayer.tools.FriendlyException;
 import com.sedmelluq.discord.lavaplayer.tools.Units;
+import com.sedmelluq.discord.lavaplayer.tools.io.HttpInterface;
 import com.sedmelluq.discord.lavaplayer.track.AudioTrack;
 import com.sedmelluq.discord.lavaplayer.track.AudioTrackInfo;
+import com.sedmelluq.discord.lavaplayer.track.playback.LocalAudioTrackExecutor;
 
 import java.io.IOException;
 import java.util.Base64;
@@ -46,14 +49,11 @@ public class MixcloudAudioTrack extends MpegTrack {
     @Override
     public String getPlaybackUrl() {
         try {
-            final var trackInfo = getSourceManager().extractTrackInfoGraphQl(
-                this.trackInfo.author,
-                urlDecode(this.trackInfo.identifier)
+            return this.getSourceManager().getPlaybackUrlCache().getOrLoad(
+                this.getSourceManager().getSourceName(),
+                this.getCacheKey(),
+                this::loadPlaybackUrl
             );
-            final String encryptedUrl = trackInfo.get("streamInfo").get("url").text();
-            final String xorUrl = new String(Base64.getDecoder().decode(encryptedUrl));
-
-            return decryptXor(xorUrl, DECRYPTION_KEY);
         } catch (IOException e) {
             throw ExceptionTools.wrapUnfriendlyExceptions(
                 "Playback of mixcloud track failed",
@@ -63,6 +63,51 @@ public class MixcloudAudioTrack extends MpegTrack {
         }
     }
 
+    @Override
+    public ResolvedStream getResolvedStream() {
+        return this.getCachedStream(this.getCacheKey(), ResolvedStream.Container.MPEG);
+    }
+
+    @Override
+    public void restoreResolvedStream(ResolvedStream stream) {
+        this.restoreCachedStream(this.getCacheKey(), stream);
+    }
+
+    @Override
+    protected void loadStream(LocalAudioTrackExecutor localExecutor, HttpInterface httpInterface) throws Exception {
+        try {
+            super.loadStream(localExecutor, httpInterface);
+        } catch (Exception e) {
+            // make sure the next attempt fetches a fresh url
+            this.getSourceManager().getPlaybackUrlCache().invalidate(
+                this.getSourceManager().getSourceName(),
+                this.getCacheKey()
+            );
+            throw e;
+        }
+    }
+
+    private String getCacheKey() {
+        // slugs are only unique per user
+        return this.trackInfo.author + '/' + this.trackInfo.identifier;
+    }
+
+    private String loadPlaybackUrl() throws IOException {
+        final var trackInfo = getSourceManager().extractPlaybackInfoGraphQl(
+            this.trackInfo.author,
+            urlDecode(this.trackInfo.identifier)
+        );
+
+        if (trackInfo == null) {
+            throw new IOException("Mixcloud track is no longer available");
+        }
+
+        final String encryptedUrl = trackInfo.get("streamInfo").get("url").text();
+        final String xorUrl = new String(Base64.getDecoder().decode(encryptedUrl));
+
+        return decryptXor(xorUrl, DECRYPTION_KEY);
+    }
+
     @Override
     protected AudioTrack makeShallowClone() {
         return new MixcloudAudioTrack(trackInfo, getSourceManager());
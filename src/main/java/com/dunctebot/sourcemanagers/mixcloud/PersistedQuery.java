@@ -0,0 +1,154 @@
+/*
+ * Copyright 2026 Duncan "duncte123" Sterken
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+
+package com.dunctebot.sourcemanagers.mixcloud;
+
+import com.sedmelluq.discord.lavaplayer.tools.JsonBrowser;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+/**
+ * A GraphQL query that is sent as a persisted query (the sha256 hash of the query instead of the query itself).
+ *
+ * When the server does not know the hash yet we send the query together with the hash, so it can store it for the
+ * next request. Once the server shows that it does not keep our queries we stop sending the hash on its own.
+ */
+final class PersistedQuery {
+    private final String query;
+    private final String hash;
+    // the server got the full query at least once
+    private volatile boolean registered = false;
+    private volatile boolean enabled = true;
+
+    PersistedQuery(String query) {
+        this.query = query;
+        this.hash = sha256(query);
+    }
+
+    String getHash() {
+        return this.hash;
+    }
+
+    /**
+     * @return true if the query should be sent by its hash only
+     */
+    boolean isEnabled() {
+        return this.enabled;
+    }
+
+    /**
+     * @param variables The variables of the query
+     * @param withQuery true to send the query itself as well
+     *
+     * @return The body of the request
+     *
+     * @throws IOException When the body can't be created
+     */
+    JsonBrowser createBody(JsonBrowser variables, boolean withQuery) throws IOException {
+        final JsonBrowser body = JsonBrowser.newMap();
+
+        if (withQuery) {
+            body.put("query", this.query);
+        }
+
+        body.put("variables", variables);
+
+        if (this.enabled) {
+            final JsonBrowser persistedQuery = JsonBrowser.newMap();
+            final JsonBrowser extensions = JsonBrowser.newMap();
+
+            persistedQuery.put("version", 1);
+            persistedQuery.put("sha256Hash", this.hash);
+            extensions.put("persistedQuery", persistedQuery);
+            body.put("extensions", extensions);
+        }
+
+        if (withQuery) {
+            this.registered = true;
+        }
+
+        return body;
+    }
+
+    /**
+     * Called when the server did not accept the hash on its own
+     *
+     * @param supported false if the server told us that it does not support persisted queries at all
+     */
+    void onRejected(boolean supported) {
+        // a hash that is rejected after we sent the query is not kept by the server either
+        if (!supported || this.registered) {
+            this.enabled = false;
+        }
+    }
+
+    /**
+     * @param response The response of the server
+     *
+     * @return true if the server did not know the hash
+     */
+    static boolean isNotFound(JsonBrowser response) {
+        return hasError(response, "PersistedQueryNotFound", "PERSISTED_QUERY_NOT_FOUND");
+    }
+
+    /**
+     * @param response The response of the server
+     *
+     * @return true if the server does not support persisted queries
+     */
+    static boolean isNotSupported(JsonBrowser response) {
+        return hasError(response, "PersistedQueryNotSupported", "PERSISTED_QUERY_NOT_SUPPORTED");
+    }
+
+    /**
+     * @param response The response of the server
+     *
+     * @return true if the server reported errors and did not return the cloudcast
+     */
+    static boolean isFailed(JsonBrowser response) {
+        return !response.get("errors").values().isEmpty() && response.get("data").get("cloudcast").isNull();
+    }
+
+    private static boolean hasError(JsonBrowser response, String message, String code) {
+        for (final JsonBrowser error : response.get("errors").values()) {
+            if (message.equals(error.get("message").text()) || code.equals(error.get("extensions").get("code").text())) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    private static String sha256(String value) {
+        try {
+            final byte[] digest = MessageDigest.getInstance("SHA-256").digest(value.getBytes(StandardCharsets.UTF_8));
+            final StringBuilder hex = new StringBuilder(digest.length * 2);
+
+            for (final byte b : digest) {
+                hex.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+            }
+
+            return hex.toString();
+        } catch (NoSuchAlgorithmException e) {
+            // every java runtime has sha-256
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -61,6 +61,11 @@ public class OCRemixAudioSourceManager extends AbstractDuncteBotHttpSource {
         }
 
         final String id = matcher.group("id");
+
+        return this.fetchItem(id, () -> this.loadRemix(id));
+    }
+
+    private AudioItem loadRemix(String id) {
         // https://ocremix.org/remix/OCR03310?view=xml
         final HttpGet httpGet = new HttpGet("https://ocremix.org/remix/"+id+"?view=xml");
         try (final CloseableHttpResponse response = getHttpInterface().execute(httpGet)) {
@@ -22,6 +22,7 @@ import com.dunctebot.sourcemanagers.AbstractDuncteBotHttpSource;
 import com.dunctebot.sourcemanagers.IWillUseIdentifierInstead;
 import com.dunctebot.sourcemanagers.Mp3Track;
 import com.sedmelluq.discord.lavaplayer.tools.io.HttpInterface;
+import com.sedmelluq.discord.lavaplayer.track.AudioTrack;
 import com.sedmelluq.discord.lavaplayer.track.AudioTrackInfo;
 import com.sedmelluq.discord.lavaplayer.track.playback.LocalAudioTrackExecutor;
 
@@ -60,4 +61,9 @@ public class OCRemixAudioTrack extends Mp3Track implements IWillUseIdentifierIns
     public String getPlaybackUrl() {
         return "https://" + MUSIC_HOSTS[this.hostIndex] + this.trackInfo.uri;
     }
+
+    @Override
+    protected AudioTrack makeShallowClone() {
+        return new OCRemixAudioTrack(this.trackInfo, getSourceManager());
+    }
 }
@@ -0,0 +1,291 @@
+/*
+ * Copyright 2026 Duncan "duncte123" Sterken
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+
+package com.dunctebot.sourcemanagers.pornhub;
+
+import javax.annotation.Nullable;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * An index of the {@code var name = "..." + other + "...";} assignments in the inline scripts of a page.
+ *
+ * The page is walked once, the comments that hide decoy parts in between the real parts are skipped along the way.
+ * Assignments with anything else than strings and variable names joined by {@code +} are ignored.
+ * Values that reference other variables are assembled when they are looked up.
+ */
+public final class JsVariableIndex {
+    // references deeper than this are cycles or something we don't understand
+    private static final int MAX_DEPTH = 16;
+
+    private final Map<String, Part[]> variables;
+
+    private JsVariableIndex(Map<String, Part[]> variables) {
+        this.variables = variables;
+    }
+
+    /**
+     * @param source The html page or script to index
+     *
+     * @return The index of every string variable in the source
+     */
+    public static JsVariableIndex parse(String source) {
+        final Map<String, Part[]> variables = new HashMap<>();
+        final int length = source.length();
+        int position = 0;
+
+        while ((position = source.indexOf("var", position)) != -1) {
+            final int end = position + 3;
+
+            if ((position > 0 && Character.isJavaIdentifierPart(source.charAt(position - 1))) ||
+                end >= length || !Character.isWhitespace(source.charAt(end))) {
+                position = end;
+                continue;
+            }
+
+            position = parseDeclarations(source, end, variables);
+        }
+
+        return new JsVariableIndex(variables);
+    }
+
+    /**
+     * @param name The name of the variable
+     *
+     * @return The value of the variable, or null if it is not defined or references a variable that is not defined
+     */
+    @Nullable
+    public String get(String name) {
+        final StringBuilder builder = new StringBuilder();
+
+        if (!this.append(builder, name, 0)) {
+            return null;
+        }
+
+        return builder.toString();
+    }
+
+    /**
+     * @return The amount of indexed variables
+     */
+    public int size() {
+        return this.variables.size();
+    }
+
+    private boolean append(StringBuilder builder, String name, int depth) {
+        final Part[] parts = this.variables.get(name);
+
+        if (parts == null || depth > MAX_DEPTH) {
+            return false;
+        }
+
+        for (final Part part : parts) {
+            if (part.reference) {
+                if (!this.append(builder, part.value, depth + 1)) {
+                    return false;
+                }
+            } else {
+                builder.append(part.value);
+            }
+        }
+
+        return true;
+    }
+
+    /**
+     * Parses {@code a = "x" + b, c = "y";} starting right after the var keyword
+     *
+     * @return The position to continue looking for the next var keyword from
+     */
+    private static int parseDeclarations(String source, int position, Map<String, Part[]> variables) {
+        final int length = source.length();
+
+        while (true) {
+            position = skipIgnored(source, position);
+
+            final int nameEnd = identifierEnd(source, position);
+
+            if (nameEnd == position) {
+                return position;
+            }
+
+            final String name = source.substring(position, nameEnd);
+
+            position = skipIgnored(source, nameEnd);
+
+            if (position >= length || source.charAt(position) != '=') {
+                return position;
+            }
+
+            final List<Part> parts = new ArrayList<>();
+            final StringBuilder literal = new StringBuilder();
+
+            while (true) {
+                position = skipIgnored(source, position + 1);
+
+                if (position >= length) {
+                    return length;
+                }
+
+                final char c = source.charAt(position);
+
+                if (c == '"' || c == '\'') {
+                    final int stringEnd = readString(source, position, literal);
+
+                    if (stringEnd == -1) {
+                        return position + 1;
+                    }
+
+                    position = stringEnd;
+                } else {
+                    final int referenceEnd = identifierEnd(source, position);
+
+                    if (referenceEnd == position) {
+                        return position;
+                    }
+
+                    if (literal.length() > 0) {
+                        parts.add(new Part(literal.toString(), false));
+                        literal.setLength(0);
+                    }
+
+                    parts.add(new Part(source.substring(position, referenceEnd), true));
+                    position = referenceEnd;
+                }
+
+                position = skipIgnored(source, position);
+
+                if (position >= length || source.charAt(position) != '+') {
+                    break;
+                }
+            }
+
+            if (position >= length) {
+                return length;
+            }
+
+            final char terminator = source.charAt(position);
+
+            // anything else means the value was not just strings and names, eg a function call
+            if (terminator != ';' && terminator != ',') {
+                return position;
+            }
+
+            if (literal.length() > 0) {
+                parts.add(new Part(literal.toString(), false));
+            }
+
+            variables.put(name, parts.toArray(new Part[0]));
+
+            if (terminator == ';') {
+                return position + 1;
+            }
+
+            position++;
+        }
+    }
+
+    /**
+     * Reads a string literal and appends its value
+     *
+     * @return The position after the closing quote, or -1 if the string is not closed
+     */
+    private static int readString(String source, int position, StringBuilder out) {
+        final int length = source.length();
+        final char quote = source.charAt(position);
+
+        for (int i = position + 1; i < length; i++) {
+            final char c = source.charAt(i);
+
+            if (c == quote) {
+                return i + 1;
+            }
+
+            if (c == '\\' && i + 1 < length) {
+                // the escapes on the page are things like \/ and \", the escaped character is all we need
+                out.append(source.charAt(++i));
+            } else if (c == '\n') {
+                return -1;
+            } else {
+                out.append(c);
+            }
+        }
+
+        return -1;
+    }
+
+    private static int identifierEnd(String source, int position) {
+        final int length = source.length();
+
+        if (position >= length || !Character.isJavaIdentifierStart(source.charAt(position))) {
+            return position;
+        }
+
+        int end = position + 1;
+
+        while (end < length && Character.isJavaIdentifierPart(source.charAt(end))) {
+            end++;
+        }
+
+        return end;
+    }
+
+    // skips whitespace and comments
+    private static int skipIgnored(String source, int position) {
+        final int length = source.length();
+
+        while (position < length) {
+            final char c = source.charAt(position);
+
+            if (Character.isWhitespace(c)) {
+                position++;
+            } else if (c == '/' && position + 1 < length && source.charAt(position + 1) == '*') {
+                final int end = source.indexOf("*/", position + 2);
+
+                if (end == -1) {
+                    return length;
+                }
+
+                position = end + 2;
+            } else if (c == '/' && position + 1 < length && source.charAt(position + 1) == '/') {
+                final int end = source.indexOf('\n', position + 2);
+
+                if (end == -1) {
+                    return length;
+                }
+
+                position = end + 1;
+            } else {
+                return position;
+            }
+        }
+
+        return position;
+    }
+
+    private static final class Part {
+        private final String value;
+        private final boolean reference;
+
+        private Part(String value, boolean reference) {
+            this.value = value;
+            this.reference = reference;
+        }
+    }
+}
@@ -17,6 +17,8 @@
 package com.dunctebot.sourcemanagers.pornhub;
 
 import com.dunctebot.sourcemanagers.AbstractDuncteBotHttpSource;
+import com.dunctebot.sourcemanagers.Pair;
+import com.dunctebot.sourcemanagers.io.MarkerExtractor;
 import com.sedmelluq.discord.lavaplayer.player.AudioPlayerManager;
 import com.sedmelluq.discord.lavaplayer.tools.ExceptionTools;
 import com.sedmelluq.discord.lavaplayer.tools.FriendlyException;
@@ -26,14 +28,13 @@ import com.sedmelluq.discord.lavaplayer.track.AudioItem;
 import com.sedmelluq.discord.lavaplayer.track.AudioReference;
 import com.sedmelluq.discord.lavaplayer.track.AudioTrack;
 import com.sedmelluq.discord.lavaplayer.track.AudioTrackInfo;
-import org.apache.commons.io.IOUtils;
 import org.apache.http.client.methods.CloseableHttpResponse;
 import org.apache.http.client.methods.HttpGet;
 
+import javax.annotation.Nullable;
 import java.io.DataInput;
 import java.io.DataOutput;
 import java.io.IOException;
-import java.nio.charset.StandardCharsets;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -43,23 +44,44 @@ public class PornHubAudioSourceManager extends AbstractDuncteBotHttpSource {
     private static final Pattern VIDEO_REGEX = Pattern.compile("^" + DOMAIN_PATTERN + "/view_video\\.php\\?viewkey=([a-zA-Z0-9]+)(?:.*)$");
     public static final Pattern VIDEO_INFO_REGEX = Pattern.compile("var flashvars_\\d+ = (\\{.+})");
     private static final Pattern MODEL_INFO_REGEX = Pattern.compile("var MODEL_PROFILE = (\\{.+})");
+    // the flashvars are followed by the media variables in the same script, the model info is a single line
+    private static final MarkerExtractor PAGE_MARKERS = MarkerExtractor.allOf()
+        .capture("player", "var flashvars_", "</script>", VIDEO_INFO_REGEX)
+        .capture("model", "var MODEL_PROFILE = ", "\n", MODEL_INFO_REGEX);
+
+    private volatile Quality quality = Quality.LOWEST;
 
     @Override
     public String getSourceName() {
         return "pornhub";
     }
 
+    public Quality getQuality() {
+        return this.quality;
+    }
+
+    /**
+     * @param quality Which rendition of the video is streamed, defaults to {@link Quality#LOWEST}
+     */
+    public void setQuality(Quality quality) {
+        this.quality = quality;
+    }
+
     @Override
     public AudioItem loadItem(AudioPlayerManager manager, AudioReference reference) {
-        if (!VIDEO_REGEX.matcher(reference.identifier).matches()) {
+        final Matcher matcher = VIDEO_REGEX.matcher(reference.identifier);
+
+        if (!matcher.matches()) {
             return null;
         }
 
-        try {
-            return loadItemOnce(reference);
-        } catch (Exception e) {
-            throw ExceptionTools.wrapUnfriendlyExceptions("Something went wrong", Severity.SUSPICIOUS, e);
-        }
+        return this.fetchItem(matcher.group(matcher.groupCount()), () -> {
+            try {
+                return loadItemOnce(reference);
+            } catch (Exception e) {
+                throw ExceptionTools.wrapUnfriendlyExceptions("Something went wrong", Severity.SUSPICIOUS, e);
+            }
+        });
     }
 
     @Override
@@ -68,24 +90,26 @@ public class PornHubAudioSourceManager extends AbstractDuncteBotHttpSource {
     }
 
     @Override
-    public void encodeTrack(AudioTrack track, DataOutput output) {
-        // Nothing
+    public void encodeTrack(AudioTrack track, DataOutput output) throws IOException {
+        this.encodeResolvedStream(track, output);
     }
 
     @Override
-    public AudioTrack decodeTrack(AudioTrackInfo trackInfo, DataInput input) {
-        return new PornHubAudioTrack(trackInfo, this);
+    public AudioTrack decodeTrack(AudioTrackInfo trackInfo, DataInput input) throws IOException {
+        return this.decodeResolvedStream(new PornHubAudioTrack(trackInfo, this), input);
     }
 
     private AudioItem loadItemOnce(AudioReference reference) throws IOException {
-        final String html = loadHtml(reference.identifier);
+        final Pair<MarkerExtractor.Result, String> pageAndCookies = loadPage(reference.identifier);
 
-        if (html == null) {
+        if (pageAndCookies == null) {
             notAvailable();
         }
 
-        final JsonBrowser videoInfo = getVideoInfo(html);
-        final JsonBrowser modelInfo = getModelInfo(html);
+        final MarkerExtractor.Result page = pageAndCookies.getLeft();
+        final String playerScript = page.get("player");
+        final JsonBrowser videoInfo = getVideoInfo(playerScript);
+        final JsonBrowser modelInfo = getModelInfo(page.get("model"));
 
         if (videoInfo == null || modelInfo == null) {
             notAvailable();
@@ -103,7 +127,7 @@ public class PornHubAudioSourceManager extends AbstractDuncteBotHttpSource {
         final String uri = reference.identifier;
         final String imageUrl = videoInfo.get("image_url").safeText();
 
-        return buildAudioTrack(
+        final PornHubAudioTrack track = buildAudioTrack(
             title,
             author,
             duration,
@@ -111,6 +135,21 @@ public class PornHubAudioSourceManager extends AbstractDuncteBotHttpSource {
             uri,
             imageUrl
         );
+        final String mediaUrl = PornHubMediaInfo.findMediaUrl(
+            videoInfo.get("mediaDefinitions"),
+            JsVariableIndex.parse(playerScript)
+        );
+
+        // hand what we know to the track, playing it right away then skips downloading the page again
+        if (mediaUrl != null) {
+            track.setMediaInfo(new PornHubMediaInfo(
+                mediaUrl,
+                pageAndCookies.getRight(),
+                this.getPlaybackUrlCache().getExpiresAt(this.getSourceName(), mediaUrl)
+            ));
+        }
+
+        return track;
     }
 
     private AudioTrackInfo buildInfo(String title, String author, long duration, String identifier, String uri, String imageUrl) {
@@ -140,8 +179,12 @@ public class PornHubAudioSourceManager extends AbstractDuncteBotHttpSource {
         );
     }
 
-    private JsonBrowser getVideoInfo(String html) throws IOException {
-        final Matcher matcher = VIDEO_INFO_REGEX.matcher(html);
+    private JsonBrowser getVideoInfo(@Nullable String flashvars) throws IOException {
+        if (flashvars == null) {
+            return null;
+        }
+
+        final Matcher matcher = VIDEO_INFO_REGEX.matcher(flashvars);
 
         if (matcher.find()) {
             return JsonBrowser.parse(matcher.group(1));
@@ -150,8 +193,12 @@ public class PornHubAudioSourceManager extends AbstractDuncteBotHttpSource {
         return null;
     }
 
-    private JsonBrowser getModelInfo(String html) throws IOException {
-        final Matcher matcher = MODEL_INFO_REGEX.matcher(html);
+    private JsonBrowser getModelInfo(@Nullable String model) throws IOException {
+        if (model == null) {
+            return null;
+        }
+
+        final Matcher matcher = MODEL_INFO_REGEX.matcher(model);
 
         if (matcher.find()) {
             return JsonBrowser.parse(matcher.group(1));
@@ -160,7 +207,11 @@ public class PornHubAudioSourceManager extends AbstractDuncteBotHttpSource {
         return null;
     }
 
-    private String loadHtml(String url) throws IOException {
+    /**
+     * @return The captured parts of the page and the cookies that it set, or null if the video does not exist
+     */
+    @Nullable
+    private Pair<MarkerExtractor.Result, String> loadPage(String url) throws IOException {
         final HttpGet httpGet = new HttpGet(url);
 
         httpGet.setHeader("Cookie", "platform=pc; age_verified=1");
@@ -176,7 +227,9 @@ public class PornHubAudioSourceManager extends AbstractDuncteBotHttpSource {
                 throw new IOException("Unexpected status code for video page response: " + statusCode);
             }
 
-            return IOUtils.toString(response.getEntity().getContent(), StandardCharsets.UTF_8);
+            final String cookies = PornHubMediaInfo.getCookies(response);
+
+            return new Pair<>(PAGE_MARKERS.extract(httpGet, response), cookies);
         }
     }
 
@@ -187,4 +240,15 @@ public class PornHubAudioSourceManager extends AbstractDuncteBotHttpSource {
     public static String getPlayerPage(String id) {
         return "https://www.pornhub.com/view_video.php?viewkey=" + id;
     }
+
+    public enum Quality {
+        /**
+         * The rendition with the lowest resolution, all mp4 renditions carry the same audio so we only download less
+         */
+        LOWEST,
+        /**
+         * The rendition that the site marks as default, usually 720p
+         */
+        DEFAULT
+    }
 }
@@ -18,43 +18,91 @@ package com.dunctebot.sourcemanagers.pornhub;
 
 import com.dunctebot.sourcemanagers.AbstractDuncteBotHttpSource;
 import com.dunctebot.sourcemanagers.MpegTrack;
+import com.dunctebot.sourcemanagers.ResolvedStream;
 import com.sedmelluq.discord.lavaplayer.tools.FriendlyException;
 import com.sedmelluq.discord.lavaplayer.tools.JsonBrowser;
+import com.sedmelluq.discord.lavaplayer.tools.io.HttpInterface;
 import com.sedmelluq.discord.lavaplayer.track.AudioTrack;
 import com.sedmelluq.discord.lavaplayer.track.AudioTrackInfo;
+import com.sedmelluq.discord.lavaplayer.track.playback.LocalAudioTrackExecutor;
 import org.apache.commons.io.IOUtils;
-import org.apache.http.NameValuePair;
 import org.apache.http.client.methods.CloseableHttpResponse;
 import org.apache.http.client.methods.HttpGet;
 
+import javax.annotation.Nullable;
 import java.io.IOException;
 import java.nio.charset.StandardCharsets;
-import java.util.*;
+import java.util.Locale;
+import java.util.Set;
 import java.util.regex.Matcher;
-import java.util.regex.Pattern;
-import java.util.stream.Collectors;
 
 import static com.dunctebot.sourcemanagers.pornhub.PornHubAudioSourceManager.VIDEO_INFO_REGEX;
 import static com.dunctebot.sourcemanagers.pornhub.PornHubAudioSourceManager.getPlayerPage;
 import static com.sedmelluq.discord.lavaplayer.tools.FriendlyException.Severity.*;
 
 public class PornHubAudioTrack extends MpegTrack {
-    private static final Pattern MEDIA_STRING_FILTER = Pattern.compile("\\/\\* \\+ [a-zA-Z0-9_]+ \\+ \\*\\/");
+    private static final Set<String> AUDIO_FORMATS = Set.of("m4a", "aac", "mp3", "audio");
+
+    @Nullable
+    private volatile PornHubMediaInfo mediaInfo;
 
     public PornHubAudioTrack(AudioTrackInfo trackInfo, AbstractDuncteBotHttpSource sourceManager) {
         super(trackInfo, sourceManager);
     }
 
+    void setMediaInfo(@Nullable PornHubMediaInfo mediaInfo) {
+        this.mediaInfo = mediaInfo;
+    }
+
     @Override
     public String getPlaybackUrl() {
         try {
-            return loadFromMediaInfo();
+            return this.getSourceManager().getPlaybackUrlCache().getOrLoad(
+                this.getSourceManager().getSourceName(),
+                this.trackInfo.identifier,
+                this::loadFromMediaInfo
+            );
         } catch (IOException e) {
             throw new FriendlyException("Could not load PornHub video", SUSPICIOUS, e);
         }
     }
 
+    @Override
+    public ResolvedStream getResolvedStream() {
+        return this.getCachedStream(this.trackInfo.identifier, ResolvedStream.Container.MPEG);
+    }
+
+    @Override
+    public void restoreResolvedStream(ResolvedStream stream) {
+        this.restoreCachedStream(this.trackInfo.identifier, stream);
+    }
+
+    @Override
+    protected void loadStream(LocalAudioTrackExecutor localExecutor, HttpInterface httpInterface) throws Exception {
+        try {
+            super.loadStream(localExecutor, httpInterface);
+        } catch (Exception e) {
+            // The cached url might have been revoked early, make sure the next attempt scrapes a fresh one
+            this.getSourceManager().getPlaybackUrlCache().invalidate(
+                this.getSourceManager().getSourceName(),
+                this.trackInfo.identifier
+            );
+            throw e;
+        }
+    }
+
     public String loadFromMediaInfo() throws IOException {
+        final PornHubMediaInfo carried = this.mediaInfo;
+
+        if (carried != null && carried.isValid()) {
+            try {
+                return loadMp4Url(carried.getMediaUrl(), carried.getCookies());
+            } catch (Exception ignored) {
+                // the session might have been dropped early, the page gives us a new one
+                this.mediaInfo = null;
+            }
+        }
+
         final HttpGet httpGet = new HttpGet(getPlayerPage(this.trackInfo.identifier));
 
         httpGet.setHeader("Cookie", "platform=pc; age_verified=1");
@@ -77,71 +125,19 @@ public class PornHubAudioTrack extends MpegTrack {
                     throw new FriendlyException("Media info not present", COMMON, null);
                 }
 
-                int i = 0;
-                while (!defs.index(i).isNull()) {
-                    // we found the default quality
-                    if ("mp4".equalsIgnoreCase(defs.index(i).get("format").safeText())) {
-                        final String cookies = Arrays.stream(response.getHeaders("Set-Cookie"))
-                            .map(NameValuePair::getValue)
-                            .map((s) -> s.split(";", 2)[0])
-                            .collect(Collectors.joining("; "));
-                        final String getMedia = parseJsValueToUrl(
-                            html,
-                            scoupMediaVar(html, "media_" + i)
-                        );
-
-                        return loadMp4Url(getMedia, cookies);
-                    }
-
-                    i++;
+                final String getMedia = PornHubMediaInfo.findMediaUrl(defs, JsVariableIndex.parse(html));
+
+                if (getMedia == null) {
+                    throw new FriendlyException("Media var has changed, please contact developer", FAULT, null);
                 }
 
-                /*return parseJsValueToUrl(
-                    html,
-                    scoupMediaVar(html, "media_0") // fallback to first item (not mp4)
-                );*/
+                return loadMp4Url(getMedia, PornHubMediaInfo.getCookies(response));
             }
 
             throw new FriendlyException("Could not find media info", COMMON, null);
         }
     }
 
-    private String scoupMediaVar(String html, String varName) {
-        final Pattern pattern = Pattern.compile("(var(?:\\s+)?" + varName + "(?:\\s+)?=(?:\\s+)?[^;]+;)");
-        final Matcher matcher = pattern.matcher(html);
-
-        if (!matcher.find()) {
-            throw new FriendlyException("Media var has changed, please contact developer", FAULT, null);
-        }
-
-        return matcher.group(matcher.groupCount());
-    }
-
-    private String parseJsValueToUrl(String htmlPage, String js) {
-        final String filteredJsValue = MEDIA_STRING_FILTER.matcher(js).replaceAll("");
-        final String variables = filteredJsValue.split("=")[1].split(";")[0];
-        final String[] items = variables.split("\\+");
-        final List<String> videoParts = new ArrayList<>();
-
-        for (final String i : items) {
-            final String item = i.trim();
-            final String regex = "var\\s+?" + item + "=\"([a-zA-Z0-9=?&%~_\\-\\.\\/\"\\+: ]+)\";";
-            final Pattern pattern = Pattern.compile(regex);
-            final Matcher matcher = pattern.matcher(htmlPage);
-
-            if (!matcher.find()) {
-                System.out.println(htmlPage);
-                throw new FriendlyException("URL part " + item + " missing", SUSPICIOUS, null);
-            }
-
-            videoParts.add(
-                matcher.group(matcher.groupCount()).replaceAll("\"\\s+?\\+\\s+?\"", "")
-            );
-        }
-
-        return String.join("", videoParts);
-    }
-
     private String loadMp4Url(String jsonPage, String cookie) throws IOException {
         final HttpGet mediaGet = new HttpGet(jsonPage);
 
@@ -151,31 +147,67 @@ public class PornHubAudioTrack extends MpegTrack {
         try (final CloseableHttpResponse response = this.getSourceManager().getHttpInterface().execute(mediaGet)) {
             final String body = IOUtils.toString(response.getEntity().getContent(), StandardCharsets.UTF_8);
             final JsonBrowser json = JsonBrowser.parse(body);
+            final String videoUrl = selectVideoUrl(json, ((PornHubAudioSourceManager) this.getSourceManager()).getQuality());
 
-            for (JsonBrowser info : json.values()) {
-                if (info.get("defaultQuality").asBoolean(false)) {
-                    return info.get("videoUrl").text();
-                }
+            if (videoUrl == null) {
+                throw new FriendlyException("Video url missing on playback page", FAULT, null);
             }
 
-            final JsonBrowser firstItem = json.index(0);
+            return videoUrl;
+        }
+    }
 
-            if (firstItem.isNull()) {
-                throw new FriendlyException("Video url missing on playback page", FAULT, null);
+    /**
+     * @param renditions The renditions from the media json
+     * @param quality The quality to pick
+     *
+     * @return The url of the rendition to stream, or null if there is none
+     */
+    @Nullable
+    static String selectVideoUrl(JsonBrowser renditions, PornHubAudioSourceManager.Quality quality) {
+        JsonBrowser selected = null;
+
+        for (final JsonBrowser rendition : renditions.values()) {
+            if (rendition.get("videoUrl").isNull()) {
+                continue;
             }
 
-            final String videoUrl = firstItem.get("videoUrl").text();
+            // an audio only rendition beats any video
+            if (AUDIO_FORMATS.contains(rendition.get("format").safeText().toLowerCase(Locale.ROOT))) {
+                return rendition.get("videoUrl").text();
+            }
 
-            if (videoUrl == null) {
-                throw new FriendlyException("Video url missing on playback page", FAULT, null);
+            if (quality == PornHubAudioSourceManager.Quality.LOWEST) {
+                if (selected == null || getHeight(rendition) < getHeight(selected)) {
+                    selected = rendition;
+                }
+            } else if (selected == null || (!isDefault(selected) && isDefault(rendition))) {
+                selected = rendition;
             }
+        }
 
-            return videoUrl;
+        return selected == null ? null : selected.get("videoUrl").text();
+    }
+
+    private static boolean isDefault(JsonBrowser rendition) {
+        return rendition.get("defaultQuality").asBoolean(false);
+    }
+
+    // the quality is the height of the video, eg "240", renditions without one are only used when there is nothing else
+    private static int getHeight(JsonBrowser rendition) {
+        try {
+            return Integer.parseInt(rendition.get("quality").safeText());
+        } catch (NumberFormatException ignored) {
+            return Integer.MAX_VALUE;
         }
     }
 
     @Override
     protected AudioTrack makeShallowClone() {
-        return new PornHubAudioTrack(trackInfo, getSourceManager());
+        final PornHubAudioTrack track = new PornHubAudioTrack(trackInfo, getSourceManager());
+
+        track.setMediaInfo(this.mediaInfo);
+
+        return track;
     }
 }
@@ -0,0 +1,92 @@
+/*
+ * Copyright 2026 Duncan "duncte123" Sterken
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+
+package com.dunctebot.sourcemanagers.pornhub;
+
+import com.sedmelluq.discord.lavaplayer.tools.JsonBrowser;
+import org.apache.http.HttpResponse;
+import org.apache.http.NameValuePair;
+
+import javax.annotation.Nullable;
+import java.util.Arrays;
+import java.util.stream.Collectors;
+
+/**
+ * What the player page tells us about getting the media, kept on the track so playing it does not need the page again.
+ */
+class PornHubMediaInfo {
+    private final String mediaUrl;
+    private final String cookies;
+    private final long expiresAt;
+
+    PornHubMediaInfo(String mediaUrl, String cookies, long expiresAt) {
+        this.mediaUrl = mediaUrl;
+        this.cookies = cookies;
+        this.expiresAt = expiresAt;
+    }
+
+    /**
+     * @return The url of the json with the video urls
+     */
+    String getMediaUrl() {
+        return this.mediaUrl;
+    }
+
+    /**
+     * @return The cookies of the session that the media url was made for
+     */
+    String getCookies() {
+        return this.cookies;
+    }
+
+    boolean isValid() {
+        return this.expiresAt > System.currentTimeMillis();
+    }
+
+    /**
+     * @param mediaDefinitions The media definitions from the flashvars
+     * @param variables The variables of the player script
+     *
+     * @return The url of the json with the video urls for the first mp4 definition, or null if there is none
+     */
+    @Nullable
+    static String findMediaUrl(JsonBrowser mediaDefinitions, JsVariableIndex variables) {
+        int i = 0;
+
+        while (!mediaDefinitions.index(i).isNull()) {
+            if ("mp4".equalsIgnoreCase(mediaDefinitions.index(i).get("format").safeText())) {
+                return variables.get("media_" + i);
+            }
+
+            i++;
+        }
+
+        return null;
+    }
+
+    /**
+     * @param response The response of the player page
+     *
+     * @return The cookies that the page set, in the format of the Cookie header
+     */
+    static String getCookies(HttpResponse response) {
+        return Arrays.stream(response.getHeaders("Set-Cookie"))
+            .map(NameValuePair::getValue)
+            .map((s) -> s.split(";", 2)[0])
+            .collect(Collectors.joining("; "));
+    }
+}
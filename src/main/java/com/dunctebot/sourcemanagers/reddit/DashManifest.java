@@ -0,0 +1,114 @@
+/*
+ * Copyright 2026 Duncan "duncte123" Sterken
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+
+package com.dunctebot.sourcemanagers.reddit;
+
+import javax.annotation.Nullable;
+import java.net.URI;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Picks the audio of a reddit video from its DASH manifest ({@code DASHPlaylist.mpd}).
+ *
+ * Older posts have a single {@code DASH_audio.mp4}, newer posts list {@code DASH_AUDIO_64.mp4} and
+ * {@code DASH_AUDIO_128.mp4}. The manifest is tiny and always has the same shape, a few patterns are enough for it.
+ */
+final class DashManifest {
+    // anything from 48kbps is fine for discord, this also catches a "64k" stream that reports a little less
+    static final int ADEQUATE_BANDWIDTH = 48_000;
+
+    private static final Pattern ADAPTATION_SET = Pattern.compile("<AdaptationSet\\b([^>]*)>(.*?)</AdaptationSet>", Pattern.DOTALL);
+    private static final Pattern REPRESENTATION = Pattern.compile("<Representation\\b([^>]*)>(.*?)</Representation>", Pattern.DOTALL);
+    private static final Pattern BASE_URL = Pattern.compile("<BaseURL>\\s*([^<]+?)\\s*</BaseURL>");
+    private static final Pattern BANDWIDTH = Pattern.compile("\\bbandwidth=\"(\\d{1,18})\"");
+    private static final Pattern AUDIO = Pattern.compile("\\b(?:contentType=\"audio\"|mimeType=\"audio/)");
+
+    private DashManifest() {}
+
+    /**
+     * @param mpd The manifest
+     * @param manifestUrl The url of the manifest, the urls in it are relative to this
+     *
+     * @return The url of the lowest audio stream with at least {@link #ADEQUATE_BANDWIDTH}, the best audio stream when
+     * none of them reach that, or null if the video does not have audio
+     */
+    @Nullable
+    static String selectAudioUrl(String mpd, String manifestUrl) {
+        final Matcher sets = ADAPTATION_SET.matcher(mpd);
+        String selected = null;
+        long selectedBandwidth = -1L;
+
+        while (sets.find()) {
+            final boolean audioSet = AUDIO.matcher(sets.group(1)).find();
+            final Matcher representations = REPRESENTATION.matcher(sets.group(2));
+
+            while (representations.find()) {
+                final String attributes = representations.group(1);
+
+                if (!audioSet && !AUDIO.matcher(attributes).find()) {
+                    continue;
+                }
+
+                final Matcher baseUrl = BASE_URL.matcher(representations.group(2));
+
+                if (!baseUrl.find()) {
+                    continue;
+                }
+
+                final long bandwidth = getBandwidth(attributes);
+
+                if (selected == null || isBetter(bandwidth, selectedBandwidth)) {
+                    selected = baseUrl.group(1);
+                    selectedBandwidth = bandwidth;
+                }
+            }
+        }
+
+        if (selected == null) {
+            return null;
+        }
+
+        return URI.create(manifestUrl).resolve(unescape(selected)).toString();
+    }
+
+    private static boolean isBetter(long bandwidth, long current) {
+        final boolean adequate = bandwidth >= ADEQUATE_BANDWIDTH;
+        final boolean currentAdequate = current >= ADEQUATE_BANDWIDTH;
+
+        if (adequate != currentAdequate) {
+            return adequate;
+        }
+
+        // the lowest stream that is good enough, or the best one we have if none of them are
+        return adequate ? bandwidth < current : bandwidth > current;
+    }
+
+    private static long getBandwidth(String attributes) {
+        final Matcher matcher = BANDWIDTH.matcher(attributes);
+
+        return matcher.find() ? Long.parseLong(matcher.group(1)) : 0L;
+    }
+
+    static String unescape(String value) {
+        return value.replace("&lt;", "<")
+            .replace("&gt;", ">")
+            .replace("&quot;", "\"")
+            .replace("&apos;", "'")
+            .replace("&amp;", "&");
+    }
+}
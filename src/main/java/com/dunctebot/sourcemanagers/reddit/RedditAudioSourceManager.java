@@ -17,15 +17,17 @@
 package com.dunctebot.sourcemanagers.reddit;
 
 import com.dunctebot.sourcemanagers.AbstractDuncteBotHttpSource;
+import com.dunctebot.sourcemanagers.cache.BatchLoader;
+import com.dunctebot.sourcemanagers.io.ShortLinkResolver;
 import com.sedmelluq.discord.lavaplayer.player.AudioPlayerManager;
 import com.sedmelluq.discord.lavaplayer.tools.ExceptionTools;
 import com.sedmelluq.discord.lavaplayer.tools.FriendlyException;
 import com.sedmelluq.discord.lavaplayer.tools.JsonBrowser;
-import com.sedmelluq.discord.lavaplayer.tools.io.HttpInterface;
 import com.sedmelluq.discord.lavaplayer.track.AudioItem;
 import com.sedmelluq.discord.lavaplayer.track.AudioReference;
 import com.sedmelluq.discord.lavaplayer.track.AudioTrack;
 import com.sedmelluq.discord.lavaplayer.track.AudioTrackInfo;
+import com.sedmelluq.discord.lavaplayer.track.BasicAudioPlaylist;
 import org.apache.commons.io.IOUtils;
 import org.apache.http.client.methods.CloseableHttpResponse;
 import org.apache.http.client.methods.HttpGet;
@@ -35,18 +37,37 @@ import java.io.DataInput;
 import java.io.DataOutput;
 import java.io.IOException;
 import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
+import java.util.stream.Collectors;
 
 import static com.dunctebot.sourcemanagers.Utils.USER_AGENT;
 import static com.dunctebot.sourcemanagers.Utils.isURL;
-import static com.dunctebot.sourcemanagers.reddit.RedditAudioTrack.getPlaybackUrl;
 import static com.sedmelluq.discord.lavaplayer.tools.FriendlyException.Severity.COMMON;
-import static com.sedmelluq.discord.lavaplayer.tools.JsonBrowser.NULL_BROWSER;
 
 public class RedditAudioSourceManager extends AbstractDuncteBotHttpSource {
     private static final Pattern FULL_LINK_REGEX = Pattern.compile("https:\\/\\/(?:www|old)\\.reddit\\.com\\/r\\/(?:[^\\/]+)\\/(?:[^\\/]+)\\/([^\\/]+)(?:\\/?(?:[^\\/]+)?\\/?)?");
     private static final Pattern VIDEO_LINK_REGEX = Pattern.compile("https:\\/\\/v\\.redd\\.it\\/([^\\/]+)(?:.*)?");
+    private static final Pattern POST_ID_REGEX = Pattern.compile("[a-z0-9]+");
+    // hot is what reddit shows when there's no order in the url, the order must not be followed by a post id
+    private static final Pattern LISTING_REGEX = Pattern.compile("https:\\/\\/(?:www\\.|old\\.)?reddit\\.com\\/r\\/([A-Za-z0-9_]+)(?:\\/(hot|new|top|rising|controversial))?\\/?(?:\\?([^#]*))?(?:#.*)?", Pattern.CASE_INSENSITIVE);
+    private static final Pattern LISTING_TIME_REGEX = Pattern.compile("(?:^|&)t=(hour|day|week|month|year|all)(?:&|$)");
+    // the most ids that api/info takes at once
+    private static final int MAX_POSTS_PER_REQUEST = 100;
+
+    private final BatchLoader<String, JsonBrowser> postLoader = new BatchLoader<>(
+        this::fetchPosts, MAX_POSTS_PER_REQUEST, 20L, TimeUnit.MILLISECONDS
+    );
+
+    private volatile int listingPageLimit = 5;
 
     public RedditAudioSourceManager() {
         this.configureBuilder(
@@ -54,6 +75,44 @@ public class RedditAudioSourceManager extends AbstractDuncteBotHttpSource {
         );
     }
 
+    /**
+     * Posts that are loaded within this window of each other are fetched in a single request, the first load waits
+     * for the window to pass. Defaults to 20 milliseconds, 0 disables batching.
+     *
+     * @param window The time to wait for other posts
+     * @param unit The unit of the window
+     */
+    public void setBatchWindow(long window, TimeUnit unit) {
+        this.postLoader.setWindow(window, unit);
+    }
+
+    public long getBatchWindow(TimeUnit unit) {
+        return this.postLoader.getWindow(unit);
+    }
+
+    /**
+     * @param listingPageLimit The maximum amount of pages of 100 posts that are loaded from a subreddit, defaults to 5
+     */
+    public void setListingPageLimit(int listingPageLimit) {
+        this.listingPageLimit = Math.max(1, listingPageLimit);
+    }
+
+    public int getListingPageLimit() {
+        return this.listingPageLimit;
+    }
+
+    /**
+     * @return The loader that groups the post requests, it also counts how many requests were made
+     */
+    public BatchLoader<String, JsonBrowser> getPostLoader() {
+        return this.postLoader;
+    }
+
+    @Override
+    protected void registerShortLinks(ShortLinkResolver resolver) {
+        resolver.register("v.redd.it", FULL_LINK_REGEX.asMatchPredicate());
+    }
+
     @Override
     public String getSourceName() {
         return "reddit";
@@ -62,45 +121,89 @@ public class RedditAudioSourceManager extends AbstractDuncteBotHttpSource {
     @Override
     public AudioItem loadItem(AudioPlayerManager manager, AudioReference reference) {
         final String identifier = reference.identifier;
+        final Listing listing = Listing.parse(identifier);
+
+        // Subreddits become a playlist of their hosted videos, "r/videos/top/?t=week" would look like a post link
+        if (listing != null) {
+            return this.fetchItem(listing.getKey(), () -> {
+                final List<AudioTrack> tracks = new ArrayList<>();
+
+                this.loadListingPages(listing, tracks::addAll);
+
+                if (tracks.isEmpty()) {
+                    return AudioReference.NO_TRACK;
+                }
+
+                return new BasicAudioPlaylist(listing.getName(), tracks, null, false);
+            });
+        }
+
         final Matcher fullLink = FULL_LINK_REGEX.matcher(identifier);
 
         // If it is a full link to a reddit post we can extract the id easily
         // and send that to fetch the json and build the track
         if (fullLink.matches()) {
             final String group = fullLink.group(fullLink.groupCount());
-            final JsonBrowser data = this.fetchJson(group);
 
-            return this.buildTrack(data, identifier);
+            return this.fetchItem(group, () -> {
+                final JsonBrowser data = this.fetchJson(group);
+
+                return this.buildTrack(data, identifier);
+            });
         }
 
         final Matcher videoLink = VIDEO_LINK_REGEX.matcher(identifier);
 
-        // If we have a short video link we firstly need to follow all redirects
+        // If we have a short video link we firstly need to follow the redirects to the post
         if (videoLink.matches()) {
-            // Once we have the link we can extract the post id and build the track the normal way
-            final String actualRedditUrl = this.fetchRedirectUrl(identifier);
-            final String id = this.getPostId(actualRedditUrl);
-            final JsonBrowser data = this.fetchJson(id);
-
-            return this.buildTrack(data, actualRedditUrl);
+            return this.fetchItem("v.redd.it/" + videoLink.group(videoLink.groupCount()), () -> {
+                // Once we have the link we can extract the post id and build the track the normal way
+                final String actualRedditUrl = this.resolveShortLink(identifier);
+                final String id = this.getPostId(actualRedditUrl);
+                final JsonBrowser data = this.fetchJson(id);
+
+                return this.buildTrack(data, actualRedditUrl);
+            });
         }
 
         return null;
     }
 
+    /**
+     * Loads a subreddit (eg {@code https://www.reddit.com/r/videos/top/?t=week}) page by page, so the first tracks
+     * can be queued while the rest of the listing is still loading. Only the hosted videos that have audio are kept.
+     *
+     * @param url The url of the subreddit
+     * @param onPage Gets the tracks of every page that has any, called on the thread that loads the listing
+     *
+     * @return A future that completes when the listing is loaded, or with the exception that stopped it
+     *
+     * @throws IllegalArgumentException When the url is not a subreddit
+     */
+    public CompletableFuture<Void> loadListing(String url, Consumer<List<AudioTrack>> onPage) {
+        final Listing listing = Listing.parse(url);
+
+        if (listing == null) {
+            throw new IllegalArgumentException("Not a subreddit: " + url);
+        }
+
+        return CompletableFuture.runAsync(() -> this.loadListingPages(listing, onPage), this.getResolveExecutor());
+    }
+
     @Override
     public boolean isTrackEncodable(AudioTrack track) {
         return true;
     }
 
     @Override
-    public void encodeTrack(AudioTrack track, DataOutput output) {
-        // nothing to encode
+    public void encodeTrack(AudioTrack track, DataOutput output) throws IOException {
+        // the audio that we picked from the manifest
+        this.encodeResolvedStream(track, output);
     }
 
     @Override
-    public AudioTrack decodeTrack(AudioTrackInfo trackInfo, DataInput input) {
-        return new RedditAudioTrack(trackInfo, this);
+    public AudioTrack decodeTrack(AudioTrackInfo trackInfo, DataInput input) throws IOException {
+        return this.decodeResolvedStream(new RedditAudioTrack(trackInfo, this), input);
     }
 
     private String getPostId(String url) {
@@ -113,49 +216,78 @@ public class RedditAudioSourceManager extends AbstractDuncteBotHttpSource {
         return url;
     }
 
-    private String fetchRedirectUrl(String vRedditUrl) {
-        final HttpGet httpGet = new HttpGet(vRedditUrl);
-        final HttpInterface httpInterface = this.getHttpInterface();
+    @Nullable
+    private JsonBrowser fetchJson(String postId) {
+        final String id = postId.toLowerCase(Locale.ROOT);
 
-        // Follow all redirects until there are no more to follow and return that
-        try (final CloseableHttpResponse ignored = httpInterface.execute(httpGet)) {
-            return httpInterface.getFinalLocation().toString();
-        }
-        catch (IOException e) {
-            throw ExceptionTools.wrapUnfriendlyExceptions("Could not load data from reddit", COMMON, e);
+        // this is not a post id, don't let it break the request of the other posts
+        if (!POST_ID_REGEX.matcher(id).matches()) {
+            return null;
         }
+
+        // posts that are loaded around the same time share a request
+        return this.postLoader.load(id);
     }
 
-    @Nullable
-    private JsonBrowser fetchJson(String pageURl) {
-        // Fetch the json from the reddit api so we don't get any useless stuff we don't care about
-        final HttpGet httpGet = new HttpGet("https://api.reddit.com/api/info/?id=t3_" + pageURl);
+    /**
+     * Fetches the json of many posts from the reddit api in one request
+     *
+     * @param postIds The ids of the posts, at most {@link #MAX_POSTS_PER_REQUEST}
+     *
+     * @return The data of the posts by their id, posts that don't exist are missing
+     */
+    private Map<String, JsonBrowser> fetchPosts(List<String> postIds) {
+        final String fullNames = postIds.stream()
+            .map((id) -> "t3_" + id)
+            .collect(Collectors.joining(","));
+        final HttpGet httpGet = new HttpGet("https://api.reddit.com/api/info/?id=" + fullNames);
 
         try (final CloseableHttpResponse response = this.getHttpInterface().execute(httpGet)) {
             final String content = IOUtils.toString(response.getEntity().getContent(), StandardCharsets.UTF_8);
-            final JsonBrowser child = JsonBrowser.parse(content).get("data").get("children").index(0);
+            final Map<String, JsonBrowser> posts = new HashMap<>();
 
-            // If we have nothing in the children array we can safely return null
-            if (child.equals(NULL_BROWSER)) {
-                return null;
+            for (final JsonBrowser child : JsonBrowser.parse(content).get("data").get("children").values()) {
+                final JsonBrowser data = child.get("data");
+                final String id = data.get("id").text();
+
+                if (id != null) {
+                    posts.put(id, data);
+                }
             }
 
-            return child.get("data");
+            return posts;
         }
         catch (IOException e) {
             throw ExceptionTools.wrapUnfriendlyExceptions("Could not load data from reddit", COMMON, e);
         }
     }
 
-    private boolean canPlayAudio(String id) {
-        final HttpGet httpGet = new HttpGet(getPlaybackUrl(id));
+    /**
+     * Reads the dash manifest of a video to find out which audio it has
+     *
+     * @param videoId The id of the video on v.redd.it
+     * @param manifestUrl The url of the manifest from the post, or null to use the default location
+     *
+     * @return The url of the audio to play, or null if the video does not have audio
+     */
+    @Nullable
+    String fetchAudioUrl(String videoId, @Nullable String manifestUrl) {
+        final String url = manifestUrl == null ? "https://v.redd.it/" + videoId + "/DASHPlaylist.mpd" : manifestUrl;
+        final HttpGet httpGet = new HttpGet(url);
 
-        // Probe the audio and check the response code, if it is 200 we have some audio
         try (final CloseableHttpResponse response = this.getHttpInterface().execute(httpGet)) {
-            return response.getStatusLine().getStatusCode() == 200;
+            final int statusCode = response.getStatusLine().getStatusCode();
+
+            if (statusCode != 200) {
+                throw new IOException("Unexpected status code for dash manifest: " + statusCode);
+            }
+
+            final String mpd = IOUtils.toString(response.getEntity().getContent(), StandardCharsets.UTF_8);
+
+            return DashManifest.selectAudioUrl(mpd, url);
         }
         catch (IOException e) {
-            return false;
+            throw ExceptionTools.wrapUnfriendlyExceptions("Could not load data from reddit", COMMON, e);
         }
     }
 
@@ -190,11 +322,22 @@ public class RedditAudioSourceManager extends AbstractDuncteBotHttpSource {
 
         final String videoId = videoLink.group(videoLink.groupCount());
 
-        // Probe the audio to check if we can actually play it (there's probably a better way with the dash playlists)
-        if (!this.canPlayAudio(videoId)) {
+        // Newer posts tell us there's no audio, that saves us from loading the manifest
+        if (!media.get("has_audio").asBoolean(true)) {
+            throw new FriendlyException("This video does not have audio", COMMON, null);
+        }
+
+        final String dashUrl = media.get("dash_url").text();
+        final String audioUrl = this.fetchAudioUrl(videoId, dashUrl == null ? null : DashManifest.unescape(dashUrl));
+
+        if (audioUrl == null) {
             throw new FriendlyException("This video does not have audio", COMMON, null);
         }
 
+        return this.createTrack(data, videoId, pageURl, audioUrl);
+    }
+
+    private RedditAudioTrack createTrack(JsonBrowser data, String videoId, String pageUrl, @Nullable String audioUrl) {
         String thumbnail = data.get("thumbnail").safeText();
 
         // Fallback to null if the thumbnail is not a url
@@ -206,14 +349,142 @@ public class RedditAudioSourceManager extends AbstractDuncteBotHttpSource {
             new AudioTrackInfo(
                 data.get("title").safeText(),
                 "u/" + data.get("author").safeText(),
-                media.get("duration").asLong(1) * 1000,
+                data.get("media").get("reddit_video").get("duration").asLong(1) * 1000,
                 videoId,
                 false,
-                pageURl,
+                pageUrl,
                 thumbnail,
                 null
             ),
-            this
+            this,
+            audioUrl
         );
     }
+
+    /**
+     * Loads the hosted videos of a listing, following the {@code after} cursor of reddit
+     *
+     * @param listing The listing to load
+     * @param onPage Gets the playable tracks of every page as soon as that page is loaded, pages without any are skipped
+     */
+    private void loadListingPages(Listing listing, Consumer<List<AudioTrack>> onPage) {
+        String after = null;
+
+        for (int page = 0; page < this.listingPageLimit; page++) {
+            final JsonBrowser data = this.fetchListingPage(listing, after).get("data");
+            final List<AudioTrack> tracks = new ArrayList<>();
+
+            for (final JsonBrowser child : data.get("children").values()) {
+                final AudioTrack track = this.createListingTrack(child.get("data"));
+
+                if (track != null) {
+                    tracks.add(track);
+                }
+            }
+
+            if (!tracks.isEmpty()) {
+                onPage.accept(tracks);
+            }
+
+            after = data.get("after").text();
+
+            if (after == null) {
+                return;
+            }
+        }
+    }
+
+    private JsonBrowser fetchListingPage(Listing listing, @Nullable String after) {
+        final HttpGet httpGet = new HttpGet(listing.getApiUrl(after));
+
+        try (final CloseableHttpResponse response = this.getHttpInterface().execute(httpGet)) {
+            final int statusCode = response.getStatusLine().getStatusCode();
+
+            // private, banned and non-existing subreddits
+            if (statusCode == 403 || statusCode == 404) {
+                throw new FriendlyException("This subreddit is not available", COMMON, null);
+            }
+
+            if (statusCode != 200) {
+                throw new IOException("Unexpected status code for listing: " + statusCode);
+            }
+
+            return JsonBrowser.parse(response.getEntity().getContent());
+        }
+        catch (IOException e) {
+            throw ExceptionTools.wrapUnfriendlyExceptions("Could not load data from reddit", COMMON, e);
+        }
+    }
+
+    // Only videos that we can play end up in the playlist, the audio is picked when the track is played
+    @Nullable
+    private AudioTrack createListingTrack(JsonBrowser data) {
+        final JsonBrowser media = data.get("media").get("reddit_video");
+
+        if (!"hosted:video".equals(data.get("post_hint").safeText()) || media.isNull() ||
+            media.get("is_gif").asBoolean(false) || !media.get("has_audio").asBoolean(true)) {
+            return null;
+        }
+
+        final Matcher videoLink = VIDEO_LINK_REGEX.matcher(data.get("url").safeText());
+
+        if (!videoLink.matches()) {
+            return null;
+        }
+
+        return this.createTrack(
+            data,
+            videoLink.group(videoLink.groupCount()),
+            "https://www.reddit.com" + data.get("permalink").safeText(),
+            null
+        );
+    }
+
+    /**
+     * A subreddit with the order of its posts
+     */
+    private static class Listing {
+        private final String subreddit;
+        private final String sort;
+        @Nullable
+        private final String time;
+
+        private Listing(String subreddit, String sort, @Nullable String time) {
+            this.subreddit = subreddit;
+            this.sort = sort;
+            this.time = time;
+        }
+
+        @Nullable
+        static Listing parse(String url) {
+            final Matcher matcher = LISTING_REGEX.matcher(url);
+
+            if (!matcher.matches()) {
+                return null;
+            }
+
+            final String query = matcher.group(3);
+            final Matcher time = query == null ? null : LISTING_TIME_REGEX.matcher(query);
+
+            return new Listing(
+                matcher.group(1),
+                matcher.group(2) == null ? "hot" : matcher.group(2).toLowerCase(Locale.ROOT),
+                time != null && time.find() ? time.group(1) : null
+            );
+        }
+
+        String getApiUrl(@Nullable String after) {
+            return "https://api.reddit.com/r/" + this.subreddit + '/' + this.sort + "?limit=100&raw_json=1" +
+                (this.time == null ? "" : "&t=" + this.time) +
+                (after == null ? "" : "&after=" + after);
+        }
+
+        String getKey() {
+            return "r/" + this.subreddit.toLowerCase(Locale.ROOT) + '/' + this.sort + (this.time == null ? "" : "?t=" + this.time);
+        }
+
+        String getName() {
+            return "r/" + this.subreddit + " (" + this.sort + ')';
+        }
+    }
 }
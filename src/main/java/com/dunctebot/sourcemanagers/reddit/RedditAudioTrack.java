@@ -18,22 +18,63 @@ package com.dunctebot.sourcemanagers.reddit;
 
 import com.dunctebot.sourcemanagers.AbstractDuncteBotHttpSource;
 import com.dunctebot.sourcemanagers.MpegTrack;
+import com.dunctebot.sourcemanagers.ResolvedStream;
+import com.sedmelluq.discord.lavaplayer.tools.FriendlyException;
 import com.sedmelluq.discord.lavaplayer.tools.Units;
 import com.sedmelluq.discord.lavaplayer.track.AudioTrack;
 import com.sedmelluq.discord.lavaplayer.track.AudioTrackInfo;
 
+import javax.annotation.Nullable;
+
+import static com.sedmelluq.discord.lavaplayer.tools.FriendlyException.Severity.COMMON;
+
 public class RedditAudioTrack extends MpegTrack {
+    // the audio that was picked from the dash manifest, null until it is picked
+    @Nullable
+    private volatile String audioUrl;
+
     public RedditAudioTrack(AudioTrackInfo trackInfo, AbstractDuncteBotHttpSource manager) {
+        this(trackInfo, manager, null);
+    }
+
+    public RedditAudioTrack(AudioTrackInfo trackInfo, AbstractDuncteBotHttpSource manager, @Nullable String audioUrl) {
         super(trackInfo, manager);
+        this.audioUrl = audioUrl;
     }
 
     @Override
     public String getPlaybackUrl() {
-        return getPlaybackUrl(this.trackInfo.identifier);
+        final String url = this.audioUrl;
+
+        if (url != null) {
+            return url;
+        }
+
+        // tracks from listings and from before we read the manifest pick their audio when they are played
+        final RedditAudioSourceManager manager = (RedditAudioSourceManager) this.getSourceManager();
+        final String resolved = manager.fetchAudioUrl(this.trackInfo.identifier, null);
+
+        if (resolved == null) {
+            throw new FriendlyException("This video does not have audio", COMMON, null);
+        }
+
+        this.audioUrl = resolved;
+
+        return resolved;
     }
 
-    static String getPlaybackUrl(String id) {
-        return "https://v.redd.it/" + id + "/DASH_audio.mp4?source=fallback";
+    @Nullable
+    @Override
+    public ResolvedStream getResolvedStream() {
+        final String url = this.audioUrl;
+
+        // the files on v.redd.it don't expire
+        return url == null ? null : new ResolvedStream(url, Long.MAX_VALUE, ResolvedStream.Container.MPEG, null);
+    }
+
+    @Override
+    public void restoreResolvedStream(ResolvedStream stream) {
+        this.audioUrl = stream.getUrl();
     }
 
     @Override
@@ -44,6 +85,6 @@ public class RedditAudioTrack extends MpegTrack {
 
     @Override
     protected AudioTrack makeShallowClone() {
-        return new RedditAudioTrack(this.trackInfo, this.getSourceManager());
+        return new RedditAudioTrack(this.trackInfo, this.getSourceManager(), this.audioUrl);
     }
 }
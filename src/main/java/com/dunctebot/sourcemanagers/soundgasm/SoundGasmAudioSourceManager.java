@@ -17,6 +17,7 @@
 package com.dunctebot.sourcemanagers.soundgasm;
 
 import com.dunctebot.sourcemanagers.AbstractDuncteBotHttpSource;
+import com.dunctebot.sourcemanagers.io.MarkerExtractor;
 import com.sedmelluq.discord.lavaplayer.player.AudioPlayerManager;
 import com.sedmelluq.discord.lavaplayer.tools.ExceptionTools;
 import com.sedmelluq.discord.lavaplayer.tools.FriendlyException;
@@ -26,13 +27,11 @@ import com.sedmelluq.discord.lavaplayer.track.AudioItem;
 import com.sedmelluq.discord.lavaplayer.track.AudioReference;
 import com.sedmelluq.discord.lavaplayer.track.AudioTrack;
 import com.sedmelluq.discord.lavaplayer.track.AudioTrackInfo;
-import org.apache.commons.io.IOUtils;
 import org.apache.http.client.methods.CloseableHttpResponse;
 import org.apache.http.client.methods.HttpGet;
 import java.io.DataInput;
 import java.io.DataOutput;
 import java.io.IOException;
-import java.nio.charset.StandardCharsets;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -40,6 +39,9 @@ public class SoundGasmAudioSourceManager extends AbstractDuncteBotHttpSource  {
     private static final Pattern URL_PATTERN = Pattern.compile("https?:\\/\\/soundgasm\\.net\\/u\\/(?<path>(?<author>[^\\/]+)\\/[^\\/]+)");
     private static final Pattern SOUND_PATTERN = Pattern.compile("m4a:(?:\\s+)?[\"']https:\\/\\/media\\.soundgasm\\.net\\/sounds\\/([^.]+)\\.m4a[\"']");
     private static final Pattern TITLE_PATTERN = Pattern.compile("<div class=\"jp-title\" aria-label=\"title\">([^<]+)<\\/div>");
+    private static final MarkerExtractor PAGE_MARKERS = MarkerExtractor.allOf()
+        .capture("title", "<div class=\"jp-title\"", "</div>", TITLE_PATTERN)
+        .capture("sound", "m4a:", "\n", SOUND_PATTERN);
 
     @Override
     public String getSourceName() {
@@ -57,19 +59,21 @@ public class SoundGasmAudioSourceManager extends AbstractDuncteBotHttpSource  {
 
         final String fetchUrl = "https://soundgasm.net/u/" + urlMatcher.group("path");
 
-        while (true) {
-            try {
-                return loadItemOnce(fetchUrl, urlMatcher);
-            } catch (Exception e) {
-                if (!HttpClientTools.isRetriableNetworkException(e)) {
-                    throw ExceptionTools.wrapUnfriendlyExceptions(
-                        "Loading of soundgasm track went wrong",
-                        FriendlyException.Severity.FAULT,
-                        e
-                    );
+        return this.fetchItem(urlMatcher.group("path"), () -> {
+            while (true) {
+                try {
+                    return loadItemOnce(fetchUrl, urlMatcher);
+                } catch (Exception e) {
+                    if (!HttpClientTools.isRetriableNetworkException(e)) {
+                        throw ExceptionTools.wrapUnfriendlyExceptions(
+                            "Loading of soundgasm track went wrong",
+                            FriendlyException.Severity.FAULT,
+                            e
+                        );
+                    }
                 }
             }
-        }
+        });
     }
 
     private AudioItem loadItemOnce(String fetchUrl, Matcher urlMatcher) throws IOException {
@@ -86,14 +90,16 @@ public class SoundGasmAudioSourceManager extends AbstractDuncteBotHttpSource  {
                 throw new IOException("Invalid status code for soundgasm track page response: " + statusCode);
             }
 
-            final String content = IOUtils.toString(res.getEntity().getContent(), StandardCharsets.UTF_8);
-            final Matcher soundPatternMatcher = SOUND_PATTERN.matcher(content);
+            final MarkerExtractor.Result page = PAGE_MARKERS.extract(httpGet, res);
+            final String sound = page.get("sound");
+            final Matcher soundPatternMatcher = SOUND_PATTERN.matcher(sound == null ? "" : sound);
 
             if (!soundPatternMatcher.find()) {
                 throw new FriendlyException("Failed to extract audio file", FriendlyException.Severity.FAULT, null);
             }
 
-            final Matcher titleMatcher = TITLE_PATTERN.matcher(content);
+            final String titleDiv = page.get("title");
+            final Matcher titleMatcher = TITLE_PATTERN.matcher(titleDiv == null ? "" : titleDiv);
             final String title;
 
             if (titleMatcher.find()) {
@@ -0,0 +1,161 @@
+/*
+ * Copyright 2026 Duncan "duncte123" Sterken
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+
+package com.dunctebot.sourcemanagers.tiktok;
+
+import org.apache.http.Header;
+import org.apache.http.HttpResponse;
+import org.apache.http.cookie.Cookie;
+import org.apache.http.cookie.CookieOrigin;
+import org.apache.http.cookie.CookieSpec;
+import org.apache.http.cookie.MalformedCookieException;
+import org.apache.http.impl.cookie.RFC6265LaxSpec;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.stream.Collectors;
+
+/**
+ * The cookies of one TikTok session.
+ *
+ * Requests read an immutable snapshot with the Cookie header already built, so they never wait on each other.
+ * A new snapshot is only made when a response sets cookies that we did not have yet or when a cookie expires.
+ */
+class CookieSession {
+    private static final CookieSpec SPEC = new RFC6265LaxSpec();
+
+    private volatile Snapshot snapshot = new Snapshot(List.of(), System.currentTimeMillis());
+
+    /**
+     * @return The value for the Cookie header, empty when the session has no cookies
+     */
+    String getHeader() {
+        final Snapshot current = this.snapshot;
+
+        if (current.expiresAt > System.currentTimeMillis()) {
+            return current.header;
+        }
+
+        return this.update(List.of()).header;
+    }
+
+    List<Cookie> getCookies() {
+        return this.snapshot.cookies;
+    }
+
+    /**
+     * Stores the cookies that the response sets
+     *
+     * @param response The response to take the Set-Cookie headers from
+     * @param origin Where the response came from
+     */
+    void update(HttpResponse response, CookieOrigin origin) {
+        final Header[] headers = response.getHeaders("Set-Cookie");
+
+        if (headers.length == 0) {
+            return;
+        }
+
+        final List<Cookie> cookies = new ArrayList<>();
+
+        for (final Header header : headers) {
+            try {
+                cookies.addAll(SPEC.parse(header, origin));
+            } catch (MalformedCookieException ignored) {
+                // browsers ignore these as well
+            }
+        }
+
+        if (!cookies.isEmpty()) {
+            this.update(cookies);
+        }
+    }
+
+    synchronized void clear() {
+        this.snapshot = new Snapshot(List.of(), System.currentTimeMillis());
+    }
+
+    private synchronized Snapshot update(List<Cookie> changes) {
+        final long now = System.currentTimeMillis();
+        final Date date = new Date(now);
+        final Snapshot current = this.snapshot;
+        final Map<String, Cookie> cookies = new LinkedHashMap<>();
+        boolean changed = false;
+
+        for (final Cookie cookie : current.cookies) {
+            if (cookie.isExpired(date)) {
+                changed = true;
+            } else {
+                cookies.put(key(cookie), cookie);
+            }
+        }
+
+        for (final Cookie cookie : changes) {
+            if (cookie.isExpired(date)) {
+                changed |= cookies.remove(key(cookie)) != null;
+                continue;
+            }
+
+            final Cookie previous = cookies.put(key(cookie), cookie);
+
+            changed |= previous == null || !previous.getValue().equals(cookie.getValue()) ||
+                !Objects.equals(previous.getExpiryDate(), cookie.getExpiryDate());
+        }
+
+        if (!changed) {
+            return current;
+        }
+
+        final Snapshot updated = new Snapshot(new ArrayList<>(cookies.values()), now);
+
+        this.snapshot = updated;
+
+        return updated;
+    }
+
+    private static String key(Cookie cookie) {
+        return cookie.getName() + ';' + cookie.getDomain() + ';' + cookie.getPath();
+    }
+
+    private static final class Snapshot {
+        private final List<Cookie> cookies;
+        private final String header;
+        // the first moment that one of the cookies expires
+        private final long expiresAt;
+
+        private Snapshot(List<Cookie> cookies, long now) {
+            long expiresAt = Long.MAX_VALUE;
+
+            for (final Cookie cookie : cookies) {
+                if (cookie.getExpiryDate() != null) {
+                    expiresAt = Math.min(expiresAt, cookie.getExpiryDate().getTime());
+                }
+            }
+
+            this.cookies = Collections.unmodifiableList(cookies);
+            this.header = cookies.stream()
+                .map((c) -> c.getName() + '=' + c.getValue())
+                .collect(Collectors.joining("; "));
+            this.expiresAt = Math.max(expiresAt, now);
+        }
+    }
+}
@@ -0,0 +1,180 @@
+/*
+ * Copyright 2026 Duncan "duncte123" Sterken
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+
+package com.dunctebot.sourcemanagers.tiktok;
+
+import com.dunctebot.sourcemanagers.ResolvedStream;
+import com.dunctebot.sourcemanagers.metrics.MeteredHttpStream;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Opens the primary stream and, when that did not deliver audio within the delay, opens the fallback next to it.
+ * Whichever stream starts with valid audio first is used, the other one is closed.
+ */
+class HedgedStart {
+    // enough for an id3 tag or the first atom of an mp4
+    private static final int HEADER_SIZE = 12;
+    private static final AtomicInteger THREAD_COUNTER = new AtomicInteger();
+    // probes block on the network until the first bytes arrive, they must not take threads from loading items
+    private static final Executor PROBES = Executors.newCachedThreadPool((runnable) -> {
+        final Thread thread = new Thread(runnable, "dunctebot-hedge-" + THREAD_COUNTER.incrementAndGet());
+
+        thread.setDaemon(true);
+
+        return thread;
+    });
+
+    private final Executor executor;
+    private final long delay;
+
+    /**
+     * @param delay How long to wait for the primary stream in milliseconds before the fallback is opened
+     */
+    HedgedStart(long delay) {
+        this(PROBES, delay);
+    }
+
+    /**
+     * @param executor The executor to open the streams on
+     * @param delay How long to wait for the primary stream in milliseconds before the fallback is opened
+     */
+    HedgedStart(Executor executor, long delay) {
+        this.executor = executor;
+        this.delay = delay;
+    }
+
+    /**
+     * @return The candidate that delivered valid audio first, the other candidate is closed
+     *
+     * @throws Exception When neither candidate delivered valid audio, both candidates are closed
+     */
+    Candidate open(Candidate primary, Candidate fallback) throws Exception {
+        final CompletableFuture<Candidate> primaryStart = this.start(primary);
+
+        try {
+            final Candidate winner = primaryStart.get(this.delay, TimeUnit.MILLISECONDS);
+
+            fallback.close();
+
+            return winner;
+        } catch (TimeoutException ignored) {
+            // the primary is slow, race it with the fallback
+        } catch (ExecutionException e) {
+            // the primary failed before the delay, no need to race
+            primary.close();
+            return this.finish(this.start(fallback), fallback, primary);
+        } catch (InterruptedException e) {
+            primary.close();
+            fallback.close();
+            throw e;
+        }
+
+        final CompletableFuture<Candidate> fallbackStart = this.start(fallback);
+        final CompletableFuture<Candidate> first = new CompletableFuture<>();
+        final AtomicInteger failed = new AtomicInteger();
+
+        for (final CompletableFuture<Candidate> start : List.of(primaryStart, fallbackStart)) {
+            start.whenComplete((candidate, error) -> {
+                if (error == null) {
+                    first.complete(candidate);
+                } else if (failed.incrementAndGet() == 2) {
+                    first.completeExceptionally(error);
+                }
+            });
+        }
+
+        final Candidate winner = this.finish(first, primary, fallback);
+
+        // closing aborts the connection, a read that is still waiting for the loser fails right away
+        (winner == primary ? fallback : primary).close();
+
+        return winner;
+    }
+
+    private Candidate finish(CompletableFuture<Candidate> start, Candidate candidate, Candidate other) throws Exception {
+        try {
+            return start.get();
+        } catch (ExecutionException e) {
+            candidate.close();
+            other.close();
+
+            final Throwable cause = e.getCause();
+
+            if (cause instanceof UncheckedIOException) {
+                throw ((UncheckedIOException) cause).getCause();
+            }
+
+            throw cause instanceof Exception ? (Exception) cause : e;
+        } catch (InterruptedException e) {
+            candidate.close();
+            other.close();
+            throw e;
+        }
+    }
+
+    private CompletableFuture<Candidate> start(Candidate candidate) {
+        return CompletableFuture.supplyAsync(() -> {
+            try {
+                candidate.probe();
+                return candidate;
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }, this.executor);
+    }
+
+    static class Candidate {
+        private final MeteredHttpStream stream;
+        private final ResolvedStream.Container container;
+
+        Candidate(MeteredHttpStream stream, ResolvedStream.Container container) {
+            this.stream = stream;
+            this.container = container;
+        }
+
+        MeteredHttpStream getStream() {
+            return this.stream;
+        }
+
+        private void probe() throws IOException {
+            final byte[] header = new byte[HEADER_SIZE];
+            final int length = this.stream.peek(header);
+
+            if (!this.container.matches(header, length)) {
+                throw new IOException("Stream did not start with " + this.container + " audio");
+            }
+        }
+
+        private void close() {
+            try {
+                this.stream.close();
+            } catch (IOException ignored) {
+                // we are not using it anyway
+            }
+        }
+    }
+}
@@ -17,31 +17,40 @@
 package com.dunctebot.sourcemanagers.tiktok;
 
 import com.dunctebot.sourcemanagers.AbstractDuncteBotHttpSource;
+import com.dunctebot.sourcemanagers.Pair;
+import com.dunctebot.sourcemanagers.io.JsonPathExtractor;
+import com.dunctebot.sourcemanagers.io.MarkerExtractor;
+import com.dunctebot.sourcemanagers.io.ShortLinkResolver;
 import com.sedmelluq.discord.lavaplayer.player.AudioPlayerManager;
 import com.sedmelluq.discord.lavaplayer.tools.ExceptionTools;
 import com.sedmelluq.discord.lavaplayer.tools.FriendlyException;
 import com.sedmelluq.discord.lavaplayer.tools.FriendlyException.Severity;
 import com.sedmelluq.discord.lavaplayer.tools.JsonBrowser;
+import com.sedmelluq.discord.lavaplayer.tools.Units;
 import com.sedmelluq.discord.lavaplayer.tools.io.HttpInterface;
 import com.sedmelluq.discord.lavaplayer.track.AudioItem;
 import com.sedmelluq.discord.lavaplayer.track.AudioReference;
 import com.sedmelluq.discord.lavaplayer.track.AudioTrack;
 import com.sedmelluq.discord.lavaplayer.track.AudioTrackInfo;
-import org.apache.commons.io.IOUtils;
 import org.apache.http.client.methods.CloseableHttpResponse;
 import org.apache.http.client.methods.HttpGet;
 
+import javax.annotation.Nullable;
 import java.io.DataInput;
 import java.io.DataOutput;
 import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.URLEncoder;
 import java.nio.charset.StandardCharsets;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
 import static com.dunctebot.sourcemanagers.Utils.fakeChrome;
 
 public class TikTokAudioSourceManager extends AbstractDuncteBotHttpSource {
-    private final TikTokAudioTrackHttpManager httpManager = new TikTokAudioTrackHttpManager();
+    private final TikTokAudioTrackHttpManager httpManager;
     private static final String BASE = "https:\\/\\/(?:www\\.|m\\.)?tiktok\\.com";
     private static final String USER = "@(?<user>[^/]+)";
     private static final String VIDEO = "(?<video>[0-9]+)";
@@ -50,9 +59,57 @@ public class TikTokAudioSourceManager extends AbstractDuncteBotHttpSource {
         "<script id=\"SIGI_STATE\" type=\"application/json\">([^<]+)<\\/script>");
     private static final Pattern SIGI_REGEX = Pattern.compile(
         "<script id=\"sigi-persisted-data\">(?:\n)?window\\[(?:'SIGI_STATE'|\"SIGI_STATE\")\\](?:\\s+)?=(?:\\s+)?(.*);(?:\\s+)?(?:.*)?<\\/script>");
+    // Both scripts are in the head of the page, so we never need to download the rest of it
+    private static final MarkerExtractor PAGE_MARKERS = MarkerExtractor.anyOf()
+        .capture("state", "<script id=\"SIGI_STATE\"", "</script>", JS_REGEX)
+        .capture("persisted", "<script id=\"sigi-persisted-data\">", "</script>", SIGI_REGEX);
+    // the state also holds comments, users and recommendations, getMetaData only needs these
+    private static final JsonPathExtractor STATE_FIELDS = JsonPathExtractor.of(
+        "ItemList.video",
+        "ItemModule.*.id",
+        "ItemModule.*.desc",
+        "ItemModule.*.video",
+        "ItemModule.*.music",
+        "ItemModule.*.author"
+    );
+
+    private volatile StreamPreference streamPreference = StreamPreference.MUSIC_WHEN_ORIGINAL;
+    private volatile long hedgeDelay = -1L;
+    private volatile boolean oembedMetadata = false;
 
     public TikTokAudioSourceManager() {
+        this(1);
+    }
+
+    /**
+     * @param sessions The amount of cookie sessions to spread the videos over
+     */
+    public TikTokAudioSourceManager(int sessions) {
         super(false);
+        this.httpManager = new TikTokAudioTrackHttpManager(sessions);
+    }
+
+    /**
+     * Primes the cookie sessions in the background, call this at startup so the first track does not have to
+     *
+     * @return A future that completes when every session has its cookies
+     */
+    public CompletableFuture<Void> warmUp() {
+        return CompletableFuture.runAsync(() -> {
+            try {
+                this.httpManager.warmUp();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }, this.getResolveExecutor());
+    }
+
+    @Override
+    protected void registerShortLinks(ShortLinkResolver resolver) {
+        // the share links of the app and the old mobile links (m.tiktok.com/v/<id>.html)
+        resolver.register("vm.tiktok.com", VIDEO_REGEX.asMatchPredicate())
+            .register("vt.tiktok.com", VIDEO_REGEX.asMatchPredicate())
+            .register("m.tiktok.com", VIDEO_REGEX.asMatchPredicate());
     }
 
     @Override
@@ -60,9 +117,56 @@ public class TikTokAudioSourceManager extends AbstractDuncteBotHttpSource {
         return "tiktok";
     }
 
+    public StreamPreference getStreamPreference() {
+        return this.streamPreference;
+    }
+
+    /**
+     * @param streamPreference Which url is streamed first, defaults to {@link StreamPreference#MUSIC_WHEN_ORIGINAL}
+     */
+    public void setStreamPreference(StreamPreference streamPreference) {
+        this.streamPreference = streamPreference;
+    }
+
+    public boolean isOembedMetadata() {
+        return this.oembedMetadata;
+    }
+
+    /**
+     * Loads the metadata of tracks from the oEmbed endpoint, this is a small json response instead of the full page.
+     * The oEmbed response has no duration, tracks that are loaded this way have an unknown length.
+     * Disabled by default, the page is still used when the oEmbed endpoint fails.
+     *
+     * @param oembedMetadata true to load the metadata from the oEmbed endpoint
+     */
+    public void setOembedMetadata(boolean oembedMetadata) {
+        this.oembedMetadata = oembedMetadata;
+    }
+
+    /**
+     * @return How long to wait for the first url in milliseconds before the fallback is opened, -1 when disabled
+     */
+    public long getHedgeDelay() {
+        return this.hedgeDelay;
+    }
+
+    /**
+     * Enables hedged starts, when the first url did not deliver audio within the delay the fallback url is opened
+     * next to it and whichever starts first is played. Disabled by default, pass a negative delay to disable it.
+     *
+     * @param delay How long to wait for the first url
+     * @param unit The unit of the delay
+     */
+    public void setHedgeDelay(long delay, TimeUnit unit) {
+        this.hedgeDelay = delay < 0L ? -1L : unit.toMillis(delay);
+    }
+
     @Override
     public AudioItem loadItem(AudioPlayerManager manager, AudioReference reference) {
-        final Matcher matcher = VIDEO_REGEX.matcher(reference.identifier);
+        final String identifier = this.getShortLinkResolver().isShortLink(reference.identifier)
+            ? this.resolveShortLink(reference.identifier)
+            : reference.identifier;
+        final Matcher matcher = VIDEO_REGEX.matcher(identifier);
 
         if (!matcher.matches()) {
             return null;
@@ -71,13 +175,24 @@ public class TikTokAudioSourceManager extends AbstractDuncteBotHttpSource {
         final String user = matcher.group("user");
         final String video = matcher.group("video");
 
-        try {
-            final MetaData metaData = extractData(user, video);
+        return this.fetchItem(video, () -> {
+            try {
+                if (this.oembedMetadata) {
+                    final AudioTrackInfo info = this.loadOembedInfo(user, video);
 
-            return new TikTokAudioTrack(metaData.toTrackInfo(), this);
-        } catch (Exception e) {
-            throw ExceptionTools.wrapUnfriendlyExceptions("Something went wrong", Severity.SUSPICIOUS, e);
-        }
+                    // the download url is taken from the page when the track is played
+                    if (info != null) {
+                        return new TikTokAudioTrack(info, this);
+                    }
+                }
+
+                final MetaData metaData = extractData(user, video);
+
+                return new TikTokAudioTrack(metaData.toTrackInfo(), this);
+            } catch (Exception e) {
+                throw ExceptionTools.wrapUnfriendlyExceptions("Something went wrong", Severity.SUSPICIOUS, e);
+            }
+        });
     }
 
     @Override
@@ -86,31 +201,87 @@ public class TikTokAudioSourceManager extends AbstractDuncteBotHttpSource {
     }
 
     @Override
-    public void encodeTrack(AudioTrack track, DataOutput output) {
-        // Nothing to encode
+    public void encodeTrack(AudioTrack track, DataOutput output) throws IOException {
+        this.encodeResolvedStream(track, output);
     }
 
     @Override
-    public AudioTrack decodeTrack(AudioTrackInfo trackInfo, DataInput input) {
-        return new TikTokAudioTrack(trackInfo, this);
+    public AudioTrack decodeTrack(AudioTrackInfo trackInfo, DataInput input) throws IOException {
+        return this.decodeResolvedStream(new TikTokAudioTrack(trackInfo, this), input);
+    }
+
+    /**
+     * @return The info of the track, or null if the oEmbed endpoint did not give us what we need
+     */
+    @Nullable
+    private AudioTrackInfo loadOembedInfo(String userId, String videoId) {
+        final String pageUrl = "https://www.tiktok.com/@" + userId + "/video/" + videoId;
+        final HttpGet httpGet = new HttpGet("https://www.tiktok.com/oembed?url=" + URLEncoder.encode(pageUrl, StandardCharsets.UTF_8));
+
+        try (final CloseableHttpResponse response = getHttpInterface().execute(httpGet)) {
+            if (response.getStatusLine().getStatusCode() != 200) {
+                return null;
+            }
+
+            final JsonBrowser json = JsonBrowser.parse(response.getEntity().getContent());
+            final String title = json.get("title").text();
+
+            if (title == null) {
+                return null;
+            }
+
+            final String author = json.get("author_unique_id").text();
+
+            return new AudioTrackInfo(
+                title,
+                author == null ? userId : author,
+                Units.DURATION_MS_UNKNOWN,
+                videoId,
+                false,
+                pageUrl,
+                json.get("thumbnail_url").text(),
+                null
+            );
+        } catch (IOException ignored) {
+            // the page might still work
+            return null;
+        }
     }
 
     MetaData extractData(String userId, String videoId) throws Exception {
         System.out.println("userId: " + userId + ", videoId: " + videoId);
-        return extractData("https://www.tiktok.com/@" + userId + "/video/" + videoId);
+
+        try (final HttpInterface httpInterface = this.getHttpInterface(videoId)) {
+            return extractData("https://www.tiktok.com/@" + userId + "/video/" + videoId, httpInterface);
+        }
     }
 
     @Override
     public HttpInterface getHttpInterface() {
-        return httpManager.getHttpInterface();
+        return this.bindMetrics(httpManager.getHttpInterface());
+    }
+
+    /**
+     * @param videoId The id of the video
+     *
+     * @return An interface with the cookie session of the video
+     */
+    HttpInterface getHttpInterface(String videoId) {
+        return this.bindMetrics(httpManager.getHttpInterface(httpManager.getSession(videoId)));
     }
 
     protected MetaData extractData(String url) throws Exception {
+        try (final HttpInterface httpInterface = this.getHttpInterface()) {
+            return extractData(url, httpInterface);
+        }
+    }
+
+    protected MetaData extractData(String url, HttpInterface httpInterface) throws Exception {
         final HttpGet httpGet = new HttpGet(url);
 
         fakeChrome(httpGet);
 
-        try (final CloseableHttpResponse response = getHttpInterface().execute(httpGet)) {
+        try (final CloseableHttpResponse response = httpInterface.execute(httpGet)) {
             final int statusCode = response.getStatusLine().getStatusCode();
             if (statusCode != 200) {
                 if (statusCode == 302) { // most likely a 404
@@ -120,29 +291,29 @@ public class TikTokAudioSourceManager extends AbstractDuncteBotHttpSource {
                 throw new IOException("Unexpected status code for video page response: " + statusCode);
             }
 
-            final String html = IOUtils.toString(response.getEntity().getContent(), StandardCharsets.UTF_8);
-            final Matcher matcher = JS_REGEX.matcher(html);
+            final MarkerExtractor.Result page = PAGE_MARKERS.extract(httpGet, response);
+            final String state = page.get("state");
+            final Matcher matcher = JS_REGEX.matcher(state == null ? "" : state);
 
             if (matcher.find()) {
-                final JsonBrowser json = JsonBrowser.parse(matcher.group(1).trim());
+                final JsonBrowser json = STATE_FIELDS.extract(matcher.group(1).trim());
                 final String videoId = json.get("ItemList").get("video").get("list").index(0).text();
                 final JsonBrowser base = json.get("ItemModule").get(videoId);
 
                 return getMetaData(url, base);
             }
 
-            final Matcher sigiMatcher = SIGI_REGEX.matcher(html);
+            final String persisted = page.get("persisted");
+            final Matcher sigiMatcher = SIGI_REGEX.matcher(persisted == null ? "" : persisted);
 
             if (sigiMatcher.find()) {
-                final JsonBrowser json = JsonBrowser.parse(sigiMatcher.group(1).trim());
+                final JsonBrowser json = STATE_FIELDS.extract(sigiMatcher.group(1).trim());
                 final String videoId = json.get("ItemList").get("video").get("keyword").text();
                 final JsonBrowser video = json.get("ItemModule").get(videoId);
 
                 return getMetaData(url, video);
             }
 
-            // TODO: temp
-            System.out.println(html);
             throw new FriendlyException("Failed to find data for tiktok video", Severity.SUSPICIOUS, null);
         }
     }
@@ -162,6 +333,7 @@ public class TikTokAudioSourceManager extends AbstractDuncteBotHttpSource {
         metaData.duration = Integer.parseInt(videoJson.get("duration").safeText());
 
         metaData.musicUrl = base.get("music").get("playUrl").text();
+        metaData.originalSound = base.get("music").get("original").asBoolean(false);
 
         metaData.uniqueId = base.get("author").safeText();
 
@@ -180,6 +352,8 @@ public class TikTokAudioSourceManager extends AbstractDuncteBotHttpSource {
 
         // backup
         String musicUrl;
+        // the music is the sound of the video itself, not a song that was put under it
+        boolean originalSound;
 
         // author
         String uniqueId;
@@ -208,8 +382,32 @@ public class TikTokAudioSourceManager extends AbstractDuncteBotHttpSource {
                 ", uri='" + uri + '\'' +
                 ", duration=" + duration +
                 ", title='" + title + '\'' +
+                ", musicUrl='" + musicUrl + '\'' +
+                ", originalSound=" + originalSound +
                 ", uniqueId='" + uniqueId + '\'' +
                 '}';
         }
     }
+
+    public enum StreamPreference {
+        /**
+         * Always stream the video, the music is only used when the video fails
+         */
+        VIDEO,
+        /**
+         * Stream the audio only music when it is the original sound of the video, it is a fraction of the size
+         */
+        MUSIC_WHEN_ORIGINAL;
+
+        /**
+         * @return The url to stream first and the url to use when that fails
+         */
+        Pair<String, String> order(MetaData metaData) {
+            if (this == MUSIC_WHEN_ORIGINAL && metaData.originalSound && metaData.musicUrl != null) {
+                return new Pair<>(metaData.musicUrl, metaData.videoUrl);
+            }
+
+            return new Pair<>(metaData.videoUrl, metaData.musicUrl);
+        }
+    }
 }
@@ -19,6 +19,10 @@ package com.dunctebot.sourcemanagers.tiktok;
 import com.dunctebot.sourcemanagers.AbstractDuncteBotHttpSource;
 import com.dunctebot.sourcemanagers.MpegTrack;
 import com.dunctebot.sourcemanagers.Pair;
+import com.dunctebot.sourcemanagers.ResolvedStream;
+import com.dunctebot.sourcemanagers.cache.PlaybackUrlCache;
+import com.dunctebot.sourcemanagers.metrics.MeteredHttpStream;
+import com.dunctebot.sourcemanagers.metrics.SourceMetrics;
 import com.sedmelluq.discord.lavaplayer.container.mp3.Mp3AudioTrack;
 import com.sedmelluq.discord.lavaplayer.tools.FriendlyException;
 import com.sedmelluq.discord.lavaplayer.tools.Units;
@@ -29,9 +33,14 @@ import com.sedmelluq.discord.lavaplayer.track.AudioTrackInfo;
 import com.sedmelluq.discord.lavaplayer.track.InternalAudioTrack;
 import com.sedmelluq.discord.lavaplayer.track.playback.LocalAudioTrackExecutor;
 
+import java.io.IOException;
+import java.net.URI;
+
 import static com.sedmelluq.discord.lavaplayer.tools.FriendlyException.Severity.SUSPICIOUS;
 
 public class TikTokAudioTrack extends MpegTrack {
+    private static final String FALLBACK_SUFFIX = ":fallback";
+
     private Pair<String, String> urlCache = null;
     private boolean failedOnce = false;
 
@@ -39,6 +48,9 @@ public class TikTokAudioTrack extends MpegTrack {
         super(trackInfo, manager);
     }
 
+    /**
+     * @return The url that is tried first and the url that is used when that fails, the fallback can be null
+     */
     public Pair<String, String> getUrlCache() {
         return urlCache;
     }
@@ -60,6 +72,44 @@ public class TikTokAudioTrack extends MpegTrack {
         }
     }
 
+    @Override
+    public ResolvedStream getResolvedStream() {
+        final Pair<String, String> urls = this.urlCache;
+
+        if (urls == null) {
+            return null;
+        }
+
+        final PlaybackUrlCache cache = this.getSourceManager().getPlaybackUrlCache();
+        final String source = this.getSourceManager().getSourceName();
+        final String fallbackUrl = urls.getRight();
+        final ResolvedStream fallback = fallbackUrl == null ? null : new ResolvedStream(
+            fallbackUrl,
+            cache.getExpiresAt(source, fallbackUrl),
+            getContainer(fallbackUrl),
+            null
+        );
+
+        return new ResolvedStream(
+            urls.getLeft(),
+            cache.getExpiresAt(source, urls.getLeft()),
+            getContainer(urls.getLeft()),
+            fallback
+        );
+    }
+
+    @Override
+    public void restoreResolvedStream(ResolvedStream stream) {
+        final ResolvedStream fallback = stream.getFallback();
+
+        this.urlCache = new Pair<>(stream.getUrl(), fallback == null ? null : fallback.getUrl());
+        this.restoreCachedStream(this.trackInfo.identifier, stream);
+
+        if (fallback != null) {
+            this.restoreCachedStream(this.trackInfo.identifier + FALLBACK_SUFFIX, fallback);
+        }
+    }
+
     @Override
     public void process(LocalAudioTrackExecutor executor) throws Exception {
         try (HttpInterface httpInterface = this.getHttpInterface()) {
@@ -72,12 +122,20 @@ public class TikTokAudioTrack extends MpegTrack {
         try {
             super.loadStream(localExecutor, httpInterface);
         } catch (Exception e) {
-            if (this.failedOnce) {
+            this.invalidateCachedUrl();
+
+            if (this.failedOnce || this.urlCache == null || this.urlCache.getRight() == null) {
                 throw e;
             }
 
             this.failedOnce = true;
-            super.loadStream(localExecutor, httpInterface);
+
+            try {
+                super.loadStream(localExecutor, httpInterface);
+            } catch (Exception e2) {
+                this.invalidateCachedUrl();
+                throw e2;
+            }
         }
     }
 
@@ -99,26 +157,111 @@ public class TikTokAudioTrack extends MpegTrack {
     }*/
 
     protected Pair<String, String> loadPlaybackUrl() throws Exception {
+        final PlaybackUrlCache cache = this.getSourceManager().getPlaybackUrlCache();
+        final String source = this.getSourceManager().getSourceName();
+        final String cachedUrl = cache.get(source, this.trackInfo.identifier);
+
+        if (cachedUrl != null) {
+            final String cachedFallbackUrl = cache.get(source, this.trackInfo.identifier + FALLBACK_SUFFIX);
+
+            if (cachedFallbackUrl != null) {
+                return new Pair<>(cachedUrl, cachedFallbackUrl);
+            }
+        }
+
         final TikTokAudioSourceManager.MetaData metdata = this.getSourceManager().extractData(
             this.trackInfo.author,
             this.trackInfo.identifier
         );
+        final Pair<String, String> urls = this.getSourceManager().getStreamPreference().order(metdata);
+
+        cache.put(source, this.trackInfo.identifier, urls.getLeft());
+        cache.put(source, this.trackInfo.identifier + FALLBACK_SUFFIX, urls.getRight());
+
+        return urls;
+    }
 
-        return new Pair<>(
-            metdata.videoUrl,
-            metdata.musicUrl
+    @Override
+    protected MeteredHttpStream openStream(HttpInterface httpInterface, String trackUrl) throws Exception {
+        final TikTokAudioSourceManager manager = this.getSourceManager();
+        final String fallbackUrl = this.urlCache.getRight();
+
+        if (manager.getHedgeDelay() < 0L || this.failedOnce || fallbackUrl == null) {
+            return super.openStream(httpInterface, trackUrl);
+        }
+
+        final SourceMetrics metrics = manager.getMetrics();
+        final HttpInterface fallbackInterface = this.getHttpInterface();
+        final HedgedStart.Candidate primary = new HedgedStart.Candidate(
+            super.openStream(httpInterface, trackUrl),
+            getContainer(trackUrl)
+        );
+        final HedgedStart.Candidate fallback = new HedgedStart.Candidate(
+            new MeteredHttpStream(
+                fallbackInterface,
+                new URI(fallbackUrl),
+                this.getTrackDuration(),
+                metrics,
+                metrics.getFallbackFirstByteLatency()
+            ) {
+                @Override
+                public void close() throws IOException {
+                    try {
+                        super.close();
+                    } finally {
+                        fallbackInterface.close();
+                    }
+                }
+            },
+            getContainer(fallbackUrl)
         );
+        final HedgedStart.Candidate winner;
+
+        try {
+            winner = new HedgedStart(manager.getHedgeDelay()).open(primary, fallback);
+        } catch (Exception e) {
+            // both urls were tried, retrying the fallback on its own won't help
+            this.failedOnce = true;
+            throw e;
+        }
+
+        if (winner == fallback) {
+            log.debug("Fallback url of {} track {} started first", manager.getSourceName(), this.trackInfo.identifier);
+            // the track is now playing the fallback, there is nothing left to retry with
+            this.failedOnce = true;
+        }
+
+        return winner.getStream();
+    }
+
+    private void invalidateCachedUrl() {
+        final PlaybackUrlCache cache = this.getSourceManager().getPlaybackUrlCache();
+        final String source = this.getSourceManager().getSourceName();
+
+        cache.invalidate(source, this.trackInfo.identifier);
+
+        // once the fallback was tried, also by the hedge, neither url is worth keeping
+        if (this.failedOnce) {
+            cache.invalidate(source, this.trackInfo.identifier + FALLBACK_SUFFIX);
+        }
     }
 
     @Override
     protected InternalAudioTrack createAudioTrack(AudioTrackInfo trackInfo, SeekableInputStream stream) {
-        if (this.failedOnce && this.urlCache.getRight().contains(".mp3")) {
+        final String url = this.failedOnce ? this.urlCache.getRight() : this.urlCache.getLeft();
+
+        if (getContainer(url) == ResolvedStream.Container.MP3) {
             return new Mp3AudioTrack(trackInfo, stream);
         }
 
         return super.createAudioTrack(trackInfo, stream);
     }
 
+    // videos are mp4, the music is either an mp3 or an m4a
+    private static ResolvedStream.Container getContainer(String url) {
+        return url.contains(".mp3") ? ResolvedStream.Container.MP3 : ResolvedStream.Container.MPEG;
+    }
+
     @Override
     protected long getTrackDuration() {
         return Units.CONTENT_LENGTH_UNKNOWN;
@@ -126,7 +269,7 @@ public class TikTokAudioTrack extends MpegTrack {
 
     @Override
     protected HttpInterface getHttpInterface() {
-        return this.getSourceManager().getHttpInterface();
+        return this.getSourceManager().getHttpInterface(this.trackInfo.identifier);
     }
 
     @Override
@@ -16,70 +16,159 @@
 
 package com.dunctebot.sourcemanagers.tiktok;
 
+import com.dunctebot.sourcemanagers.io.FixtureHttpInterfaceManager;
+import com.dunctebot.sourcemanagers.io.HttpClientPools;
 import com.sedmelluq.discord.lavaplayer.tools.http.HttpContextFilter;
-import com.sedmelluq.discord.lavaplayer.tools.io.HttpClientTools;
 import com.sedmelluq.discord.lavaplayer.tools.io.HttpInterface;
 import com.sedmelluq.discord.lavaplayer.tools.io.HttpInterfaceManager;
+import org.apache.http.HttpHost;
+import org.apache.http.HttpRequestInterceptor;
 import org.apache.http.HttpResponse;
-import org.apache.http.client.CookieStore;
+import org.apache.http.HttpResponseInterceptor;
+import org.apache.http.client.methods.CloseableHttpResponse;
+import org.apache.http.client.methods.HttpGet;
 import org.apache.http.client.methods.HttpUriRequest;
 import org.apache.http.client.protocol.HttpClientContext;
-import org.apache.http.impl.client.BasicCookieStore;
+import org.apache.http.cookie.CookieOrigin;
+import org.apache.http.impl.client.HttpClientBuilder;
+import org.apache.http.protocol.HttpContext;
+import org.apache.http.util.EntityUtils;
 
-import java.util.stream.Collectors;
+import javax.annotation.Nullable;
+import java.io.IOException;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import static com.dunctebot.sourcemanagers.Utils.fakeChrome;
 
+/**
+ * Http interfaces for TikTok with one or more cookie sessions.
+ *
+ * Every interface belongs to a session, requests get the cookies of that session and responses update it.
+ * The cookies are kept by {@link CookieSession} instead of a cookie store, so playback threads don't wait on each
+ * other. With more than one session new interfaces take turns between them, everything that belongs to one video
+ * uses {@link #getSession(String)} since the download urls only work with the cookies of the page they came from.
+ */
 public class TikTokAudioTrackHttpManager implements AutoCloseable {
-//    private String cookie = null;
+    private static final String SESSION_ATTRIBUTE = "dunctebot.tiktok-session";
 
     protected final HttpInterfaceManager httpInterfaceManager;
-//    private final CookieSpec cookieSpec = new BrowserCompatSpec(); // DefaultCookieSpec does not parse (was BrowserCompatSpec)
-    private final CookieStore cookieStore = new BasicCookieStore();
+    private final CookieSession[] sessions;
+    private final AtomicInteger nextSession = new AtomicInteger();
 
     public TikTokAudioTrackHttpManager() {
-        httpInterfaceManager = HttpClientTools.createDefaultThreadLocalManager();
+        this(1);
+    }
 
-        httpInterfaceManager.configureBuilder((builder) -> {
-            builder.setDefaultCookieStore(cookieStore);
-        });
+    /**
+     * @param sessions The amount of cookie sessions to rotate between
+     */
+    public TikTokAudioTrackHttpManager(int sessions) {
+        this.sessions = new CookieSession[Math.max(1, sessions)];
+
+        for (int i = 0; i < this.sessions.length; i++) {
+            this.sessions[i] = new CookieSession();
+        }
+
+        // every manager shares the client of the group, so the interceptors must only be added once
+        httpInterfaceManager = FixtureHttpInterfaceManager.wrapFromSystemProperties(
+            HttpClientPools.getDefault().createManager("tiktok-tracks", TikTokAudioTrackHttpManager::configureClient)
+        );
 
         httpInterfaceManager.setHttpContextFilter(new TikTokFilter());
     }
 
+    /**
+     * @return An interface for the next session
+     */
     public HttpInterface getHttpInterface() {
-        return httpInterfaceManager.getInterface();
+        return this.getHttpInterface(this.nextSession());
     }
 
-    /*protected void loadCookies() throws IOException, MalformedCookieException {
-        try (final HttpInterface httpInterface = httpInterfaceManager.getInterface()) {
-            final HttpGet httpGet = new HttpGet("https://www.tiktok.com/");
+    /**
+     * @param session The session that the requests of the interface belong to
+     *
+     * @return An interface for the session
+     */
+    HttpInterface getHttpInterface(CookieSession session) {
+        final HttpInterface httpInterface = httpInterfaceManager.getInterface();
 
-            try (final CloseableHttpResponse response = httpInterface.execute(httpGet)) {
-                final CookieOrigin origin = new CookieOrigin(".tiktok.com", 443, "/", true);
+        httpInterface.getContext().setAttribute(SESSION_ATTRIBUTE, session);
 
-                final List<Cookie> cookies = new ArrayList<>();
+        return httpInterface;
+    }
 
-                for (final Header header : response.getHeaders("Set-Cookie")) {
-                    cookies.addAll(cookieSpec.parse(header, origin));
-                }
+    CookieSession nextSession() {
+        return this.sessions[Math.floorMod(this.nextSession.getAndIncrement(), this.sessions.length)];
+    }
 
-                this.cookie = cookies.stream()
-                    .map((c) -> c.getName() + '=' + c.getValue())
-                    .collect(Collectors.joining("; "));
+    /**
+     * @param key The id of the video
+     *
+     * @return The session that the video always uses, so cached urls and clones of a track keep working
+     */
+    CookieSession getSession(String key) {
+        return this.sessions[Math.floorMod(key.hashCode(), this.sessions.length)];
+    }
+
+    /**
+     * Starts every session with a fresh set of cookies from the home page, so the first track does not have to
+     *
+     * @throws IOException When loading the home page fails
+     */
+    public void warmUp() throws IOException {
+        for (final CookieSession session : this.sessions) {
+            session.clear();
+
+            try (final HttpInterface httpInterface = this.getHttpInterface(session);
+                 final CloseableHttpResponse response = httpInterface.execute(new HttpGet("https://www.tiktok.com/"))) {
+                EntityUtils.consume(response.getEntity());
             }
         }
-    }*/
+    }
+
+    private static void configureClient(HttpClientBuilder builder) {
+        // the sessions replace the cookie store, the interceptors also run for every redirect
+        builder.disableCookieManagement();
+        builder.addInterceptorLast((HttpRequestInterceptor) (request, context) -> {
+            final CookieSession session = getSession(context);
+
+            if (session != null) {
+                final String cookies = session.getHeader();
+
+                if (cookies.isEmpty()) {
+                    request.removeHeaders("Cookie");
+                } else {
+                    request.setHeader("Cookie", cookies);
+                }
+            }
+        });
+        builder.addInterceptorFirst((HttpResponseInterceptor) (response, context) -> {
+            final CookieSession session = getSession(context);
+            final HttpHost target = HttpClientContext.adapt(context).getTargetHost();
+
+            if (session != null && target != null) {
+                final boolean secure = "https".equals(target.getSchemeName());
+                final int port = target.getPort() < 0 ? (secure ? 443 : 80) : target.getPort();
+
+                session.update(response, new CookieOrigin(target.getHostName(), port, "/", secure));
+            }
+        });
+    }
+
+    @Nullable
+    private static CookieSession getSession(HttpContext context) {
+        return (CookieSession) context.getAttribute(SESSION_ATTRIBUTE);
+    }
 
     @Override
     public void close() throws Exception {
         this.httpInterfaceManager.close();
     }
 
-    private class TikTokFilter implements HttpContextFilter {
+    private static class TikTokFilter implements HttpContextFilter {
         @Override
         public void onContextOpen(HttpClientContext context) {
-            context.setCookieStore(cookieStore);
+            // Not used
         }
 
         @Override
@@ -89,17 +178,10 @@ public class TikTokAudioTrackHttpManager implements AutoCloseable {
 
         @Override
         public void onRequest(HttpClientContext context, HttpUriRequest request, boolean isRepetition) {
-            // set standard headers
+            // set standard headers, the cookies are added by the client
             final boolean isVideo = request.getURI().getPath().contains("video");
             fakeChrome(request, isVideo);
 
-            final String testCookie = context.getCookieStore()
-                .getCookies()
-                .stream()
-                .map((c) -> c.getName() + '=' + c.getValue())
-                .collect(Collectors.joining("; "));
-
-            request.setHeader("Cookie", testCookie);
             request.setHeader("Referer", "https://www.tiktok.com/");
         }
 
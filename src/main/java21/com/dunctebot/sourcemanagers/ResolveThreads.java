@@ -0,0 +1,56 @@
+/*
+ * Copyright 2026 Duncan "duncte123" Sterken
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package com.dunctebot.sourcemanagers;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Creates the executor that asynchronous loads run on.
+ *
+ * This is the Java 21 version, every load gets its own virtual thread so thousands of loads can wait on the network
+ * at the same time without a big thread pool.
+ */
+final class ResolveThreads {
+    private ResolveThreads() {
+    }
+
+    /**
+     * @return The executor that is shared by all sources unless they are given their own
+     */
+    static ExecutorService getDefault() {
+        return DefaultHolder.EXECUTOR;
+    }
+
+    static ExecutorService create() {
+        return Executors.newThreadPerTaskExecutor(
+            Thread.ofVirtual().name("dunctebot-resolve-", 1L).factory()
+        );
+    }
+
+    /**
+     * @return true if every load gets its own virtual thread
+     */
+    static boolean isVirtual() {
+        return true;
+    }
+
+    // only create the executor when someone actually loads asynchronously
+    private static final class DefaultHolder {
+        private static final ExecutorService EXECUTOR = create();
+    }
+}
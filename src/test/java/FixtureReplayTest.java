@@ -0,0 +1,97 @@
+/*
+ * Copyright 2026 Duncan "duncte123" Sterken
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+import com.dunctebot.sourcemanagers.io.FixtureHttpInterfaceManager;
+import com.sedmelluq.discord.lavaplayer.tools.io.HttpClientTools;
+import com.sedmelluq.discord.lavaplayer.tools.io.HttpInterface;
+import com.sun.net.httpserver.HttpServer;
+import org.apache.http.client.methods.CloseableHttpResponse;
+import org.apache.http.client.methods.HttpGet;
+import org.apache.http.util.EntityUtils;
+
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Records a redirect and a page from a local server, stops the server and replays them.
+ *
+ * Run any of the other tests with {@code -Ddunctebot.fixtures.mode=record} once and with
+ * {@code -Ddunctebot.fixtures.mode=replay} after that to run them without network.
+ */
+public class FixtureReplayTest {
+    public static void main(String[] args) throws Exception {
+        final Path fixtures = Files.createTempDirectory("fixtures");
+        final HttpServer server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+
+        server.createContext("/short", (exchange) -> {
+            exchange.getResponseHeaders().add("Location", "/page");
+            exchange.sendResponseHeaders(302, -1);
+            exchange.close();
+        });
+        server.createContext("/page", (exchange) -> {
+            final byte[] body = "<html>hello</html>".getBytes(StandardCharsets.UTF_8);
+
+            exchange.getResponseHeaders().add("Content-Type", "text/html; charset=utf-8");
+            exchange.getResponseHeaders().add("X-Test", "recorded");
+            exchange.sendResponseHeaders(200, body.length);
+            exchange.getResponseBody().write(body);
+            exchange.close();
+        });
+        server.start();
+
+        final String url = "http://127.0.0.1:" + server.getAddress().getPort() + "/short";
+        final String recorded;
+
+        try (final FixtureHttpInterfaceManager recorder = new FixtureHttpInterfaceManager(
+            HttpClientTools.createDefaultThreadLocalManager(), FixtureHttpInterfaceManager.Mode.RECORD, fixtures
+        )) {
+            recorded = fetch(recorder, url);
+        } finally {
+            server.stop(0);
+        }
+
+        try (final FixtureHttpInterfaceManager replayer = new FixtureHttpInterfaceManager(
+            HttpClientTools.createDefaultThreadLocalManager(), FixtureHttpInterfaceManager.Mode.REPLAY, fixtures
+        )) {
+            replayer.setLatency(50, TimeUnit.MILLISECONDS);
+
+            final long start = System.nanoTime();
+            final String replayed = fetch(replayer, url);
+            final long tookMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+
+            System.out.println("Recorded: " + recorded);
+            System.out.println("Replayed: " + replayed + " in " + tookMs + "ms");
+
+            if (!recorded.equals(replayed) || tookMs < 50) {
+                throw new AssertionError("Replay did not match the recording");
+            }
+        }
+    }
+
+    private static String fetch(FixtureHttpInterfaceManager manager, String url) throws Exception {
+        try (final HttpInterface httpInterface = manager.getInterface()) {
+            try (final CloseableHttpResponse response = httpInterface.execute(new HttpGet(url))) {
+                return response.getStatusLine().getStatusCode() + " " +
+                    response.getFirstHeader("X-Test").getValue() + " " +
+                    httpInterface.getFinalLocation().getPath() + " " +
+                    EntityUtils.toString(response.getEntity());
+            }
+        }
+    }
+}
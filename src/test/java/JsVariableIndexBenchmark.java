@@ -0,0 +1,168 @@
+/*
+ * Copyright 2026 Duncan "duncte123" Sterken
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+
+import com.dunctebot.sourcemanagers.pornhub.JsVariableIndex;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Compares the variable index with the regexes that PornHubAudioTrack used to assemble the media urls with.
+ *
+ * Pass saved player pages as arguments to benchmark those, a generated page of a similar size is used otherwise.
+ */
+public class JsVariableIndexBenchmark {
+    private static final Pattern MEDIA_STRING_FILTER = Pattern.compile("\\/\\* \\+ [a-zA-Z0-9_]+ \\+ \\*\\/");
+    private static final int ROUNDS = 2_000;
+
+    public static void main(String[] args) throws Exception {
+        final List<String> pages = new ArrayList<>();
+
+        for (final String arg : args) {
+            pages.add(Files.readString(Path.of(arg), StandardCharsets.UTF_8));
+        }
+
+        if (pages.isEmpty()) {
+            pages.add(generatePage());
+        }
+
+        for (final String page : pages) {
+            final String expected = regexes(page);
+            final String actual = JsVariableIndex.parse(page).get("media_0");
+
+            if (!expected.equals(actual)) {
+                throw new IllegalStateException("Expected " + expected + " but got " + actual);
+            }
+
+            for (int i = 0; i < 3; i++) {
+                timeRegexes(page);
+                timeIndex(page);
+            }
+
+            System.out.printf("page of %d chars%n", page.length());
+            System.out.printf("regexes: %.1f us/page%n", timeRegexes(page));
+            System.out.printf("index:   %.1f us/page%n", timeIndex(page));
+        }
+    }
+
+    private static double timeRegexes(String page) {
+        final long start = System.nanoTime();
+        int length = 0;
+
+        for (int i = 0; i < ROUNDS; i++) {
+            length += regexes(page).length();
+        }
+
+        return perPage(start, length);
+    }
+
+    private static double timeIndex(String page) {
+        final long start = System.nanoTime();
+        int length = 0;
+
+        for (int i = 0; i < ROUNDS; i++) {
+            length += JsVariableIndex.parse(page).get("media_0").length();
+        }
+
+        return perPage(start, length);
+    }
+
+    private static double perPage(long start, int length) {
+        if (length == 0) {
+            throw new IllegalStateException("Nothing was found");
+        }
+
+        return (System.nanoTime() - start) / 1000.0 / ROUNDS;
+    }
+
+    // what PornHubAudioTrack did before the index
+    private static String regexes(String html) {
+        final Pattern mediaPattern = Pattern.compile("(var(?:\\s+)?media_0(?:\\s+)?=(?:\\s+)?[^;]+;)");
+        final Matcher mediaMatcher = mediaPattern.matcher(html);
+
+        if (!mediaMatcher.find()) {
+            throw new IllegalStateException("media_0 missing");
+        }
+
+        final String js = mediaMatcher.group(mediaMatcher.groupCount());
+        final String filteredJsValue = MEDIA_STRING_FILTER.matcher(js).replaceAll("");
+        final String variables = filteredJsValue.split("=")[1].split(";")[0];
+        final StringBuilder url = new StringBuilder();
+
+        for (final String i : variables.split("\\+")) {
+            final String item = i.trim();
+            final Pattern pattern = Pattern.compile("var\\s+?" + item + "=\"([a-zA-Z0-9=?&%~_\\-\\.\\/\"\\+: ]+)\";");
+            final Matcher matcher = pattern.matcher(html);
+
+            if (!matcher.find()) {
+                throw new IllegalStateException("URL part " + item + " missing");
+            }
+
+            url.append(matcher.group(matcher.groupCount()).replaceAll("\"\\s+?\\+\\s+?\"", ""));
+        }
+
+        return url.toString();
+    }
+
+    // roughly what a player page looks like, a lot of markup with the flashvars script somewhere in the middle
+    private static String generatePage() {
+        final StringBuilder page = new StringBuilder("<!DOCTYPE html><html><head><title>video</title></head><body>");
+
+        for (int i = 0; i < 2_000; i++) {
+            page.append("<div class=\"thumb\"><a href=\"/view_video.php?viewkey=ph").append(i)
+                .append("\">related video ").append(i).append("</a></div>\n");
+        }
+
+        page.append("<script type=\"text/javascript\">\n");
+        page.append("var flashvars_1 = {\"mediaDefinitions\":[{\"format\":\"mp4\"}]};\n");
+
+        final String[] parts = {
+            "https://", "www.", "pornhub", ".com", "/video", "/get_media", "?s=eyJrIjoiOGNhM2Y", "&v=ph5fc5ef73cfc87",
+            "&e=0", "&t=p",
+        };
+        final StringBuilder media = new StringBuilder("var media_0=");
+
+        for (int i = 0; i < parts.length; i++) {
+            final String name = "ra" + Integer.toHexString(0x1f2e3d + i * 7919);
+            final String value = parts[i];
+            final int half = value.length() / 2;
+
+            page.append("var ").append(name).append("=\"").append(value, 0, half)
+                .append("\" + \"").append(value.substring(half)).append("\";\n");
+            page.append("var decoy").append(i).append("=\"https://example.com/\";\n");
+
+            if (i > 0) {
+                media.append(" + ");
+            }
+
+            media.append("/* + decoy").append(i).append(" + */").append(name);
+        }
+
+        page.append(media).append(";\n</script>\n");
+
+        for (int i = 0; i < 2_000; i++) {
+            page.append("<div class=\"comment\">comment number ").append(i).append("</div>\n");
+        }
+
+        return page.append("</body></html>").toString();
+    }
+}
@@ -0,0 +1,126 @@
+/*
+ * Copyright 2026 Duncan "duncte123" Sterken
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+
+import com.dunctebot.sourcemanagers.ResolvedStream;
+import com.dunctebot.sourcemanagers.cache.PlaybackUrlCache;
+import com.dunctebot.sourcemanagers.pornhub.PornHubAudioSourceManager;
+import com.dunctebot.sourcemanagers.pornhub.PornHubAudioTrack;
+import com.sedmelluq.discord.lavaplayer.player.DefaultAudioPlayerManager;
+import com.sedmelluq.discord.lavaplayer.tools.io.MessageInput;
+import com.sedmelluq.discord.lavaplayer.tools.io.MessageOutput;
+import com.sedmelluq.discord.lavaplayer.track.AudioTrack;
+import com.sedmelluq.discord.lavaplayer.track.AudioTrackInfo;
+import com.sedmelluq.discord.lavaplayer.track.DecodedTrackHolder;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutput;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Encodes tracks with and without a resolved stream and decodes them again, also from bytes in the format from before
+ * the resolved stream existed and from an input that can't be rewound.
+ */
+public class ResolvedStreamTest {
+    public static void main(String[] args) throws Exception {
+        final DefaultAudioPlayerManager encoder = new DefaultAudioPlayerManager();
+        final PornHubAudioSourceManager encodingSource = new PornHubAudioSourceManager();
+
+        encoder.registerSourceManager(encodingSource);
+
+        // encodes like the sources did before they stored the resolved stream
+        final DefaultAudioPlayerManager oldEncoder = new DefaultAudioPlayerManager();
+
+        oldEncoder.registerSourceManager(new PornHubAudioSourceManager() {
+            @Override
+            public void encodeTrack(AudioTrack track, DataOutput output) {
+                // Nothing was written here
+            }
+        });
+
+        final PornHubAudioTrack withStream = createTrack(encodingSource, "ph-with-stream");
+        final PornHubAudioTrack oldTrack = createTrack(encodingSource, "ph-old-format");
+
+        withStream.restoreResolvedStream(new ResolvedStream(
+            "https://example.com/video.mp4", System.currentTimeMillis() + 3_600_000L, ResolvedStream.Container.MPEG, null
+        ));
+        withStream.setPosition(12_345L);
+        oldTrack.setPosition(54_321L);
+
+        final byte[] withStreamBytes = encode(encoder, withStream);
+        final byte[] oldBytes = encode(oldEncoder, oldTrack);
+
+        // expected: position 12345 and the url
+        decode("with stream", new ByteArrayInputStream(withStreamBytes));
+        // expected: position 54321 and no url
+        decode("old format", new ByteArrayInputStream(oldBytes));
+        decode("old format without mark", new NoMarkInputStream(oldBytes));
+        // expected: position 0 and no url, the block is dropped
+        decode("with stream without mark", new NoMarkInputStream(withStreamBytes));
+
+        encoder.shutdown();
+        oldEncoder.shutdown();
+    }
+
+    private static void decode(String name, InputStream input) throws IOException {
+        // a new manager and cache, so the url can only come from the encoded track
+        final DefaultAudioPlayerManager decoder = new DefaultAudioPlayerManager();
+        final PornHubAudioSourceManager source = new PornHubAudioSourceManager();
+
+        source.setPlaybackUrlCache(new PlaybackUrlCache(16));
+        decoder.registerSourceManager(source);
+
+        final DecodedTrackHolder holder = decoder.decodeTrack(new MessageInput(input));
+        final ResolvedStream stream = ((PornHubAudioTrack) holder.decodedTrack).getResolvedStream();
+
+        System.out.println(name + ": position " + holder.decodedTrack.getPosition() +
+            ", url " + (stream == null ? null : stream.getUrl()));
+
+        decoder.shutdown();
+    }
+
+    private static PornHubAudioTrack createTrack(PornHubAudioSourceManager source, String identifier) {
+        return new PornHubAudioTrack(
+            new AudioTrackInfo("Title", "Author", 60_000L, identifier, false, "https://example.com/" + identifier),
+            source
+        );
+    }
+
+    private static byte[] encode(DefaultAudioPlayerManager manager, AudioTrack track) throws IOException {
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        final MessageOutput output = new MessageOutput(bytes);
+
+        manager.encodeTrack(output, track);
+        output.finish();
+
+        return bytes.toByteArray();
+    }
+
+    // Lavaplayer decodes from whatever stream it is given, these don't have to support mark/reset
+    private static class NoMarkInputStream extends FilterInputStream {
+        private NoMarkInputStream(byte[] bytes) {
+            super(new ByteArrayInputStream(bytes));
+        }
+
+        @Override
+        public boolean markSupported() {
+            return false;
+        }
+    }
+}
@@ -0,0 +1,133 @@
+/*
+ * Copyright 2026 Duncan "duncte123" Sterken
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+import com.dunctebot.sourcemanagers.DuncteBotSourceRouter;
+import com.dunctebot.sourcemanagers.DuncteBotSources;
+import com.sedmelluq.discord.lavaplayer.source.AudioSourceManager;
+import com.sedmelluq.discord.lavaplayer.track.AudioReference;
+
+import java.util.List;
+
+public class RouterBenchmark {
+    // Most of what we get is for other sources, these never go to the network with our managers
+    private static final String[] FOREIGN = {
+        "ytsearch:never gonna give you up",
+        "https://www.youtube.com/watch?v=dQw4w9WgXcQ",
+        "https://youtu.be/dQw4w9WgXcQ",
+        "https://open.spotify.com/track/4cOdK2wGLETKBW3PvgPWqT",
+        "scsearch:lofi beats",
+        "https://soundcloud.com/rick-astley-official/never-gonna-give-you-up-4",
+        "https://www.twitch.tv/duncte123",
+        "https://cdn.discordapp.com/attachments/1/2/song.mp3",
+        "spsearch:daft punk",
+        "https://music.apple.com/us/album/1/2",
+    };
+
+    // Ours, only routed since loading them goes to the network
+    private static final String[] OURS = {
+        "https://www.tiktok.com/@kallmekris/video/7229737213712436486?lang=en",
+        "https://www.pornhub.com/view_video.php?viewkey=ph5fc5ef73cfc87",
+        "https://www.reddit.com/r/funny/comments/abcdef/some_title/",
+        "https://v.redd.it/abcdef",
+        "https://www.mixcloud.com/jordy-boesten2/the-egotripper-lets-walk-to-my-house-mix-259/",
+        "https://soundgasm.net/u/skearch/test-audio",
+        "https://clyp.it/abcdef",
+        "OCR03310",
+        "speak:I like trains",
+        "https://getyarn.io/yarn-clip/abcdef",
+    };
+
+    private static final int ROUNDS = 200_000;
+
+    public static void main(String[] args) {
+        final DuncteBotSourceRouter router = DuncteBotSources.createRouter("en-US", true);
+        final List<AudioSourceManager> managers = router.getDelegates();
+
+        for (int i = 0; i < 3; i++) {
+            fanOut(managers);
+            routed(router);
+            route(router);
+        }
+
+        System.out.printf("fan-out over %d managers (foreign ids): %.1f ns/identifier%n", managers.size(), fanOut(managers));
+        System.out.printf("router loadItem (foreign ids):          %.1f ns/identifier%n", routed(router));
+        System.out.printf("router route (our ids):                 %.1f ns/identifier%n", route(router));
+
+        router.shutdown();
+    }
+
+    private static double fanOut(List<AudioSourceManager> managers) {
+        final long start = System.nanoTime();
+        int found = 0;
+
+        for (int round = 0; round < ROUNDS; round++) {
+            for (final String identifier : FOREIGN) {
+                final AudioReference reference = new AudioReference(identifier, null);
+
+                for (final AudioSourceManager manager : managers) {
+                    if (manager.loadItem(null, reference) != null) {
+                        found++;
+                        break;
+                    }
+                }
+            }
+        }
+
+        return perIdentifier(start, found, FOREIGN.length);
+    }
+
+    private static double routed(DuncteBotSourceRouter router) {
+        final long start = System.nanoTime();
+        int found = 0;
+
+        for (int round = 0; round < ROUNDS; round++) {
+            for (final String identifier : FOREIGN) {
+                if (router.loadItem(null, new AudioReference(identifier, null)) != null) {
+                    found++;
+                }
+            }
+        }
+
+        return perIdentifier(start, found, FOREIGN.length);
+    }
+
+    private static double route(DuncteBotSourceRouter router) {
+        final long start = System.nanoTime();
+        int found = 0;
+
+        for (int round = 0; round < ROUNDS; round++) {
+            for (final String identifier : OURS) {
+                if (router.route(identifier) != null) {
+                    found++;
+                }
+            }
+        }
+
+        if (found != ROUNDS * OURS.length) {
+            throw new IllegalStateException("Not every identifier was routed");
+        }
+
+        return perIdentifier(start, 0, OURS.length);
+    }
+
+    private static double perIdentifier(long start, int found, int identifiers) {
+        if (found != 0) {
+            throw new IllegalStateException("Foreign identifiers should not be loaded");
+        }
+
+        return (System.nanoTime() - start) / (double) (ROUNDS * identifiers);
+    }
+}
@@ -0,0 +1,167 @@
+/*
+ * Copyright 2026 Duncan "duncte123" Sterken
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+
+import com.dunctebot.sourcemanagers.io.JsonPathExtractor;
+import com.sedmelluq.discord.lavaplayer.tools.JsonBrowser;
+
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Compares parsing the whole SIGI_STATE of a TikTok page with extracting the fields that we use.
+ *
+ * Pass recorded pages (or the json of their SIGI_STATE script) as arguments to measure those, a generated state
+ * of a similar size is used otherwise. Reports the time and the bytes allocated per page.
+ */
+public class SigiStateBenchmark {
+    private static final Pattern STATE_REGEX = Pattern.compile(
+        "<script id=\"SIGI_STATE\" type=\"application/json\">([^<]+)</script>");
+    // the same paths as TikTokAudioSourceManager
+    private static final JsonPathExtractor STATE_FIELDS = JsonPathExtractor.of(
+        "ItemList.video",
+        "ItemModule.*.id",
+        "ItemModule.*.desc",
+        "ItemModule.*.video",
+        "ItemModule.*.music",
+        "ItemModule.*.author"
+    );
+    private static final int ROUNDS = 500;
+
+    public static void main(String[] args) throws Exception {
+        final List<String> states = new ArrayList<>();
+
+        for (final String arg : args) {
+            final String content = Files.readString(Path.of(arg), StandardCharsets.UTF_8);
+            final Matcher matcher = STATE_REGEX.matcher(content);
+
+            states.add(matcher.find() ? matcher.group(1).trim() : content.trim());
+        }
+
+        if (states.isEmpty()) {
+            states.add(generateState());
+        }
+
+        for (final String state : states) {
+            final String expected = describe(JsonBrowser.parse(state));
+            final String actual = describe(STATE_FIELDS.extract(state));
+
+            if (!expected.equals(actual)) {
+                throw new IllegalStateException("Expected " + expected + " but got " + actual);
+            }
+
+            for (int i = 0; i < 3; i++) {
+                measure(state, false);
+                measure(state, true);
+            }
+
+            System.out.printf("state of %d chars%n", state.length());
+            System.out.println("full parse: " + measure(state, false));
+            System.out.println("extract:    " + measure(state, true));
+        }
+    }
+
+    private static String measure(String state, boolean extract) throws Exception {
+        final com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        final long thread = Thread.currentThread().getId();
+        final long allocatedBefore = threads.getThreadAllocatedBytes(thread);
+        final long start = System.nanoTime();
+        int found = 0;
+
+        for (int i = 0; i < ROUNDS; i++) {
+            final JsonBrowser json = extract ? STATE_FIELDS.extract(state) : JsonBrowser.parse(state);
+
+            if (!json.get("ItemList").isNull()) {
+                found++;
+            }
+        }
+
+        final long time = System.nanoTime() - start;
+        final long allocated = threads.getThreadAllocatedBytes(thread) - allocatedBefore;
+
+        if (found != ROUNDS) {
+            throw new IllegalStateException("ItemList missing");
+        }
+
+        return String.format("%.1f us/page, %d KB allocated/page", time / 1000.0 / ROUNDS, allocated / 1024 / ROUNDS);
+    }
+
+    // everything that TikTokAudioSourceManager.getMetaData reads
+    private static String describe(JsonBrowser json) {
+        final String videoId = json.get("ItemList").get("video").get("list").index(0).text();
+        final JsonBrowser base = json.get("ItemModule").get(videoId);
+        final JsonBrowser video = base.get("video");
+
+        return String.join("|",
+            base.get("id").safeText(),
+            base.get("desc").safeText(),
+            base.get("author").safeText(),
+            video.get("downloadAddr").safeText(),
+            video.get("playAddr").safeText(),
+            video.get("cover").safeText(),
+            video.get("duration").safeText(),
+            base.get("music").get("playUrl").safeText(),
+            base.get("music").get("original").safeText()
+        );
+    }
+
+    // roughly what a video page holds, the item itself with a lot of users, comments and recommendations around it
+    private static String generateState() {
+        final StringBuilder state = new StringBuilder("{\"AppContext\":{\"appContext\":{\"language\":\"en\",\"region\":\"US\"}},");
+
+        state.append("\"ItemList\":{\"video\":{\"list\":[\"7229737213712436486\"],\"browserList\":[\"7229737213712436486\"]},");
+        state.append("\"recommend\":{\"list\":[");
+
+        for (int i = 0; i < 200; i++) {
+            state.append(i == 0 ? "" : ",").append('"').append(7229737213712000000L + i).append('"');
+        }
+
+        state.append("]}},\"ItemModule\":{\"7229737213712436486\":{\"id\":\"7229737213712436486\",");
+        state.append("\"desc\":\"a video #fyp\",\"author\":\"kallmekris\",\"video\":{\"id\":\"7229737213712436486\",");
+        state.append("\"duration\":31,\"cover\":\"https://p16-sign.tiktokcdn-us.com/cover.jpeg\",");
+        state.append("\"playAddr\":\"https://v16-webapp-prime.us.tiktok.com/video/play.mp4\",");
+        state.append("\"downloadAddr\":\"https://v16-webapp-prime.us.tiktok.com/video/download.mp4\",");
+        state.append("\"bitrateInfo\":[{\"Bitrate\":1234567,\"QualityType\":10}]},");
+        state.append("\"music\":{\"id\":\"7229737245043940126\",\"title\":\"original sound\",");
+        state.append("\"playUrl\":\"https://sf16-ies-music-va.tiktokcdn.com/obj/music.mp3\",\"original\":true},");
+        state.append("\"stats\":{\"diggCount\":1000,\"shareCount\":10,\"commentCount\":100,\"playCount\":100000}}},");
+        state.append("\"UserModule\":{\"users\":{");
+
+        for (int i = 0; i < 400; i++) {
+            state.append(i == 0 ? "" : ",").append("\"user").append(i).append("\":{\"id\":\"").append(i)
+                .append("\",\"uniqueId\":\"user").append(i).append("\",\"nickname\":\"User number ").append(i)
+                .append("\",\"avatarThumb\":\"https://p16-sign.tiktokcdn-us.com/avatar").append(i)
+                .append(".jpeg\",\"signature\":\"just a user\",\"verified\":false,\"followerCount\":").append(i * 17)
+                .append('}');
+        }
+
+        state.append("}},\"CommentItem\":{");
+
+        for (int i = 0; i < 500; i++) {
+            state.append(i == 0 ? "" : ",").append("\"").append(7229800000000000000L + i).append("\":{\"text\":\"")
+                .append("comment number ").append(i).append(" on this video\",\"user\":\"user").append(i % 400)
+                .append("\",\"diggCount\":").append(i).append(",\"replyCommentTotal\":0,\"createTime\":1683400000}");
+        }
+
+        return state.append("}}").toString();
+    }
+}